@@ -0,0 +1,42 @@
+package br.com.seuapp.bench;
+
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.repository.ProdutoRepository;
+import br.com.seuapp.util.GeradorCatalogo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Apoio dos benchmarks: gera o catálogo sintético e grava o CSV num diretório temporário.
+ */
+final class Catalogos {
+    static final long SEMENTE = 42;
+
+    private Catalogos() {}
+
+    static List<Produto> gerar(int tamanho, int categorias, int diasValidade) {
+        var gerador = new GeradorCatalogo(SEMENTE);
+        gerador.setQuantidadeCategorias(categorias);
+        gerador.setDiasValidade(diasValidade);
+        return gerador.gerar(tamanho);
+    }
+
+    static Path gravarCSV(List<Produto> catalogo) throws IOException {
+        var dir = Files.createTempDirectory("bench-produtos");
+        var csv = dir.resolve("produtos.csv");
+        new ProdutoRepository(csv).salvar(catalogo);
+        return csv;
+    }
+
+    static void apagar(Path csv) throws IOException {
+        if (csv == null) return;
+        try (Stream<Path> arquivos = Files.walk(csv.getParent())) {
+            for (var p : arquivos.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package br.com.seuapp.bench;
+
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.repository.ProdutoRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga e gravação completas do CSV ({@link ProdutoRepository#carregar()} / {@link ProdutoRepository#salvar}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProdutoRepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int tamanho;
+
+    @Param({"50"})
+    int categorias;
+
+    @Param({"730"})
+    int diasValidade;
+
+    @Param({"1"})
+    int paralelismo;
+
+    @Param({"false"})
+    boolean binario;
+
+    private Path csv;
+    private List<Produto> catalogo;
+    private ProdutoRepository repo;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        catalogo = Catalogos.gerar(tamanho, categorias, diasValidade);
+        csv = Catalogos.gravarCSV(catalogo);
+        repo = new ProdutoRepository(csv);
+        repo.setParalelismo(paralelismo);
+        repo.setSnapshotBinario(binario);
+        repo.salvar(catalogo); // com binario=true, deixa o .bin pronto
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() throws IOException {
+        Catalogos.apagar(csv);
+    }
+
+    @Benchmark
+    public List<Produto> carregar() {
+        return repo.carregar();
+    }
+
+    @Benchmark
+    public void salvar() {
+        repo.salvar(catalogo);
+    }
+}
@@ -0,0 +1,117 @@
+package br.com.seuapp.bench;
+
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.repository.ProdutoRepository;
+import br.com.seuapp.service.ColunarProdutoStore;
+import br.com.seuapp.service.IndexadoProdutoStore;
+import br.com.seuapp.service.ProdutoService;
+import br.com.seuapp.util.GeradorCatalogo;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operações do {@link ProdutoService}: CRUD e os quatro relatórios.
+ * {@code persistencia=csv} mede o cadastro com a regravação completa do arquivo;
+ * {@code journal} só acrescenta registros (com checkpoint a cada 1000).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProdutoServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int tamanho;
+
+    @Param({"50"})
+    int categorias;
+
+    @Param({"730"})
+    int diasValidade;
+
+    @Param({"indexado", "colunar"})
+    String armazenamento;
+
+    @Param({"journal"})
+    String persistencia;
+
+    private Path csv;
+    private ProdutoService service;
+    private List<Produto> catalogo;
+    private final Random random = new Random(Catalogos.SEMENTE);
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        catalogo = Catalogos.gerar(tamanho, categorias, diasValidade);
+        csv = Catalogos.gravarCSV(catalogo);
+        var repo = new ProdutoRepository(csv);
+        repo.setModoJournal("journal".equals(persistencia));
+        service = new ProdutoService(repo,
+                "colunar".equals(armazenamento) ? new ColunarProdutoStore() : new IndexadoProdutoStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() throws IOException {
+        Catalogos.apagar(csv);
+    }
+
+    @Benchmark
+    public Optional<Produto> consultar() {
+        return service.consultar(GeradorCatalogo.codigo(random.nextInt(tamanho)));
+    }
+
+    /**
+     * Exclui e cadastra de novo um produto existente: o tamanho do catálogo não muda entre iterações.
+     */
+    @Benchmark
+    public boolean excluirECadastrar() {
+        var original = catalogo.get(random.nextInt(tamanho));
+        boolean removido = service.excluir(original.getCodigo());
+        var p = copia(original);
+        service.cadastrar(p);
+        return removido;
+    }
+
+    @Benchmark
+    public List<Produto> proximosAVencer() {
+        return service.proximosAVencer(60);
+    }
+
+    @Benchmark
+    public List<Produto> estoqueBaixo() {
+        return service.estoqueBaixo(10);
+    }
+
+    @Benchmark
+    public Map<String, Double> margemMediaPorCategoria() {
+        return service.margemMediaPorCategoria();
+    }
+
+    @Benchmark
+    public List<Produto> listarPorSetor() {
+        return service.listarPorSetor("Secos");
+    }
+
+    private static Produto copia(Produto o) {
+        var p = new Produto();
+        p.setCodigo(o.getCodigo());
+        p.setNome(o.getNome());
+        p.setDescricao(o.getDescricao());
+        p.setDataFabricacao(o.getDataFabricacao());
+        p.setDataValidade(o.getDataValidade());
+        p.setPrecoCompra(o.getPrecoCompra());
+        p.setPrecoVenda(o.getPrecoVenda());
+        p.setQuantidadeEstoque(o.getQuantidadeEstoque());
+        p.setCategoria(o.getCategoria());
+        return p;
+    }
+}
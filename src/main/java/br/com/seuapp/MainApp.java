@@ -1,5 +1,6 @@
 package br.com.seuapp;
 
+import br.com.seuapp.controller.MainController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -7,10 +8,14 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 public class MainApp extends Application {
+    private MainController controller;
+
     @Override
     public void start(Stage stage) throws Exception {
 
-        Parent root = FXMLLoader.load(getClass().getResource("/view/MainView.fxml"));
+        var loader = new FXMLLoader(getClass().getResource("/view/MainView.fxml"));
+        Parent root = loader.load();
+        controller = loader.getController();
 
 
         Scene scene = new Scene(root, 950, 600);
@@ -19,5 +24,10 @@ public class MainApp extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        if (controller != null) controller.encerrar();
+    }
+
     public static void main(String[] args) { launch(args); }
 }
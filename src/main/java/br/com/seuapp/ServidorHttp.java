@@ -0,0 +1,348 @@
+package br.com.seuapp;
+
+import br.com.seuapp.model.Categoria;
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.service.ProdutoService;
+import br.com.seuapp.util.Executores;
+import br.com.seuapp.util.Json;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Modo servidor (sem tela): API JSON sobre o {@link ProdutoService}, para terminais de caixa e coletores.
+ * Usa o HttpServer do JDK com uma thread por requisição (virtual threads no JDK 21+).
+ * <pre>
+ * GET    /produtos?inicio=0&amp;quantidade=100   página da listagem: {"total", "inicio", "produtos"}
+ * GET    /produtos?busca=feijao&amp;quantidade=100  busca por texto, do mais relevante: [produtos]
+ * GET    /produtos/{codigo}                    consultar (404 se não existir)
+ * POST   /produtos                             cadastrar (corpo: produto em JSON; 201)
+ * DELETE /produtos/{codigo}                    excluir (204, ou 404)
+ * GET    /relatorios/vencimento?dias=60
+ * GET    /relatorios/estoque?limite=10
+ * GET    /relatorios/margem                    {"porCategoria", "porSetor", "geral"}
+ * GET    /relatorios/setor?setor=Bebidas
+ * </pre>
+ * Datas em ISO (yyyy-MM-dd); preços como números. Erros de validação voltam como 400 {"erro": "..."};
+ * corpo acima de 1 MiB, como 413.
+ * <p>
+ * Uso: {@code java -cp target/classes br.com.seuapp.ServidorHttp [porta=8080] [csv=<arquivo>]}
+ * (as opções -Dprodutos.* valem como na aplicação).
+ */
+public class ServidorHttp {
+    private static final int PAGINA_MAXIMA = 10_000;
+    private static final int CORPO_MAXIMO = 1 << 20; // um produto em JSON tem poucos KB
+
+    static {
+        // respostas pequenas: sem TCP_NODELAY o Nagle + ACK atrasado do cliente somam ~40 ms por requisição.
+        // Lido quando o HttpServer é carregado pela primeira vez; quem definir a propriedade na linha de comando manda.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ProdutoService service;
+    private final HttpServer servidor;
+    private final ExecutorService executor = Executores.porTarefa("produtos-http");
+
+    /**
+     * @param porta 0 escolhe uma porta livre (veja {@link #porta()})
+     */
+    public ServidorHttp(ProdutoService service, int porta) throws IOException {
+        this.service = service;
+        this.servidor = HttpServer.create(new InetSocketAddress(porta), 0);
+        servidor.createContext("/produtos", this::produtos);
+        servidor.createContext("/relatorios/", this::relatorios);
+        servidor.setExecutor(executor);
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    public int porta() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Para de aceitar requisições, espera até 1 s pelas que estão em andamento e libera as threads.
+     */
+    public void parar() {
+        servidor.stop(1);
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        var opcoes = new HashMap<String, String>();
+        for (var a : args) {
+            int i = a.indexOf('=');
+            if (i <= 0) throw new IllegalArgumentException("Argumento inválido (use chave=valor): " + a);
+            opcoes.put(a.substring(0, i), a.substring(i + 1));
+        }
+        int porta = Integer.parseInt(opcoes.getOrDefault("porta", "8080"));
+        var csv = Path.of(opcoes.getOrDefault("csv", "src/main/resources/data/produtos.csv"));
+
+        var service = new ProdutoService(csv);
+        var servidor = new ServidorHttp(service, porta);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.parar();
+            service.fechar();
+        }, "produtos-encerramento"));
+        servidor.iniciar();
+        System.out.println("API de produtos em http://localhost:" + servidor.porta() + "/produtos");
+    }
+
+    // ===== rotas =====
+
+    private void produtos(HttpExchange ex) throws IOException {
+        atender(ex, () -> {
+            String resto = ex.getRequestURI().getPath().substring("/produtos".length());
+            String codigo = resto.startsWith("/") && resto.length() > 1 ? resto.substring(1) : null;
+            if (!resto.isEmpty() && codigo == null && !resto.equals("/")) return Resposta.naoEncontrado();
+            String metodo = ex.getRequestMethod();
+
+            if (codigo == null) {
+                if (metodo.equals("GET")) {
+                    var q = parametros(ex);
+                    int inicio = inteiro(q, "inicio", 0);
+                    int quantidade = Math.min(inteiro(q, "quantidade", 100), PAGINA_MAXIMA);
+                    if (q.containsKey("busca")) {
+                        return new Resposta(200, mapas(service.buscar(q.get("busca"), quantidade)));
+                    }
+                    var corpo = new LinkedHashMap<String, Object>();
+                    corpo.put("total", service.quantidade());
+                    corpo.put("inicio", inicio);
+                    corpo.put("produtos", mapas(service.listar(inicio, quantidade)));
+                    return new Resposta(200, corpo);
+                }
+                if (metodo.equals("POST")) {
+                    var p = produto(Json.ler(corpo(ex)));
+                    service.cadastrar(p);
+                    return new Resposta(201, mapa(p));
+                }
+                return Resposta.metodoNaoPermitido();
+            }
+            if (metodo.equals("GET")) {
+                return service.consultar(codigo).map(p -> new Resposta(200, mapa(p))).orElseGet(Resposta::naoEncontrado);
+            }
+            if (metodo.equals("DELETE")) {
+                return service.excluir(codigo) ? new Resposta(204, null) : Resposta.naoEncontrado();
+            }
+            return Resposta.metodoNaoPermitido();
+        });
+    }
+
+    private void relatorios(HttpExchange ex) throws IOException {
+        atender(ex, () -> {
+            if (!ex.getRequestMethod().equals("GET")) return Resposta.metodoNaoPermitido();
+            var q = parametros(ex);
+            return switch (ex.getRequestURI().getPath().substring("/relatorios/".length())) {
+                case "vencimento" -> new Resposta(200, mapas(service.proximosAVencer(inteiro(q, "dias", 60))));
+                case "estoque" -> new Resposta(200, mapas(service.estoqueBaixo(inteiro(q, "limite", 10))));
+                case "setor" -> new Resposta(200, mapas(service.listarPorSetor(q.get("setor"))));
+                case "margem" -> {
+                    var corpo = new LinkedHashMap<String, Object>();
+                    corpo.put("porCategoria", service.margemMediaPorCategoria());
+                    corpo.put("porSetor", service.margemMediaPorSetor());
+                    corpo.put("geral", service.resumoMargemGeral().map(r -> {
+                        var g = new LinkedHashMap<String, Object>();
+                        g.put("quantidade", r.quantidade());
+                        g.put("media", r.media());
+                        g.put("minima", r.minima());
+                        g.put("maxima", r.maxima());
+                        return g;
+                    }).orElse(null));
+                    yield new Resposta(200, corpo);
+                }
+                default -> Resposta.naoEncontrado();
+            };
+        });
+    }
+
+    // ===== infraestrutura =====
+
+    private record Resposta(int status, Object corpo) {
+        static Resposta naoEncontrado() { return new Resposta(404, Map.of("erro", "Não encontrado.")); }
+        static Resposta metodoNaoPermitido() { return new Resposta(405, Map.of("erro", "Método não permitido.")); }
+    }
+
+    private interface Rota {
+        Resposta atender() throws IOException;
+    }
+
+    // corpo da requisição acima de CORPO_MAXIMO: vira 413 e o resto não é lido
+    private static final class CorpoGrandeDemais extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CorpoGrandeDemais() { super("Corpo da requisição acima de " + CORPO_MAXIMO + " bytes.", null, false, false); }
+    }
+
+    private static void atender(HttpExchange ex, Rota rota) throws IOException {
+        try {
+            Resposta r;
+            boolean descartarCorpo = true;
+            try {
+                r = rota.atender();
+            } catch (CorpoGrandeDemais e) {
+                r = new Resposta(413, Map.of("erro", e.getMessage()));
+                descartarCorpo = false; // não lê o resto; o HttpServer fecha a conexão
+            } catch (IllegalArgumentException e) {
+                r = new Resposta(400, Map.of("erro", String.valueOf(e.getMessage())));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                r = new Resposta(500, Map.of("erro", "Erro interno."));
+            }
+            // corpo não lido (ex.: DELETE com Content-Length: 0) faz o HttpServer descartar a conexão keep-alive
+            if (descartarCorpo) ex.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            if (r.corpo() == null) {
+                ex.sendResponseHeaders(r.status(), -1);
+                return;
+            }
+            byte[] bytes = Json.escrever(r.corpo()).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(r.status(), bytes.length);
+            ex.getResponseBody().write(bytes);
+        } finally {
+            ex.close();
+        }
+    }
+
+    /**
+     * Lê o corpo da requisição em UTF-8; acima de {@link #CORPO_MAXIMO} bytes lança {@link CorpoGrandeDemais}.
+     */
+    private static String corpo(HttpExchange ex) throws IOException {
+        String declarado = ex.getRequestHeaders().getFirst("Content-Length");
+        if (declarado != null) {
+            try {
+                if (Long.parseLong(declarado.trim()) > CORPO_MAXIMO) throw new CorpoGrandeDemais();
+            } catch (NumberFormatException e) {
+                // o HttpServer já recusa Content-Length inválido; o limite abaixo vale de qualquer jeito
+            }
+        }
+        byte[] bytes = ex.getRequestBody().readNBytes(CORPO_MAXIMO + 1); // chunked: sem tamanho declarado
+        if (bytes.length > CORPO_MAXIMO) throw new CorpoGrandeDemais();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parametros(HttpExchange ex) {
+        var mapa = new HashMap<String, String>();
+        String query = ex.getRequestURI().getRawQuery();
+        if (query == null) return mapa;
+        for (var par : query.split("&")) {
+            int i = par.indexOf('=');
+            if (i <= 0) continue;
+            mapa.put(URLDecoder.decode(par.substring(0, i), StandardCharsets.UTF_8),
+                    URLDecoder.decode(par.substring(i + 1), StandardCharsets.UTF_8));
+        }
+        return mapa;
+    }
+
+    private static int inteiro(Map<String, String> q, String nome, int padrao) {
+        String v = q.get(nome);
+        if (v == null || v.isBlank()) return padrao;
+        try {
+            int n = Integer.parseInt(v.trim());
+            if (n < 0) throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parâmetro \"" + nome + "\" inválido: " + v);
+        }
+    }
+
+    // ===== produto <-> JSON =====
+
+    private static List<Map<String, Object>> mapas(List<Produto> produtos) {
+        var lista = new ArrayList<Map<String, Object>>(produtos.size());
+        for (var p : produtos) lista.add(mapa(p));
+        return lista;
+    }
+
+    static Map<String, Object> mapa(Produto p) {
+        var m = new LinkedHashMap<String, Object>();
+        m.put("codigo", p.getCodigo());
+        m.put("nome", p.getNome());
+        m.put("descricao", p.getDescricao());
+        m.put("dataFabricacao", p.getDataFabricacao() != null ? p.getDataFabricacao().toString() : null);
+        m.put("dataValidade", p.getDataValidade() != null ? p.getDataValidade().toString() : null);
+        m.put("precoCompra", p.getPrecoCompra());
+        m.put("precoVenda", p.getPrecoVenda());
+        m.put("quantidadeEstoque", p.getQuantidadeEstoque());
+        var c = p.getCategoria();
+        if (c != null) {
+            var cm = new LinkedHashMap<String, Object>();
+            cm.put("id", c.getId());
+            cm.put("nome", c.getNome());
+            cm.put("descricao", c.getDescricao());
+            cm.put("setor", c.getSetor());
+            m.put("categoria", cm);
+        } else {
+            m.put("categoria", null);
+        }
+        return m;
+    }
+
+    private static Produto produto(Object json) {
+        if (!(json instanceof Map<?, ?> m)) throw new IllegalArgumentException("Esperado um objeto JSON com o produto.");
+        var p = new Produto();
+        p.setCodigo(texto(m, "codigo"));
+        p.setNome(texto(m, "nome"));
+        p.setDescricao(texto(m, "descricao"));
+        p.setDataFabricacao(data(m, "dataFabricacao"));
+        p.setDataValidade(data(m, "dataValidade"));
+        p.setPrecoCompra(decimal(m, "precoCompra"));
+        p.setPrecoVenda(decimal(m, "precoVenda"));
+        var qtd = decimal(m, "quantidadeEstoque");
+        p.setQuantidadeEstoque(qtd == null ? 0 : inteiroExato(qtd, "quantidadeEstoque"));
+        if (m.get("categoria") instanceof Map<?, ?> c) {
+            var id = decimal(c, "id");
+            p.setCategoria(new Categoria(id == null ? 0 : inteiroExato(id, "categoria.id"),
+                    texto(c, "nome"), texto(c, "descricao"), texto(c, "setor")));
+        }
+        return p;
+    }
+
+    private static String texto(Map<?, ?> m, String campo) {
+        var v = m.get(campo);
+        return v == null ? null : v.toString();
+    }
+
+    private static LocalDate data(Map<?, ?> m, String campo) {
+        String v = texto(m, campo);
+        if (v == null || v.isBlank()) return null;
+        try {
+            return LocalDate.parse(v.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data inválida em \"" + campo + "\" (use yyyy-MM-dd): " + v);
+        }
+    }
+
+    private static BigDecimal decimal(Map<?, ?> m, String campo) {
+        var v = m.get(campo);
+        if (v == null) return null;
+        if (v instanceof BigDecimal d) return d;
+        try {
+            return new BigDecimal(v.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Número inválido em \"" + campo + "\": " + v);
+        }
+    }
+
+    private static int inteiroExato(BigDecimal v, String campo) {
+        try {
+            return v.intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Inteiro inválido em \"" + campo + "\": " + v);
+        }
+    }
+}
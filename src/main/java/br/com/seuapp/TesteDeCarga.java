@@ -0,0 +1,263 @@
+package br.com.seuapp;
+
+import br.com.seuapp.repository.ProdutoRepository;
+import br.com.seuapp.service.ProdutoService;
+import br.com.seuapp.util.GeradorCatalogo;
+import br.com.seuapp.util.HistogramaLatencia;
+import br.com.seuapp.util.Json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Teste de carga sem tela: gera um catálogo sintético, abre o {@link ProdutoService} sobre ele e dispara
+ * uma mistura de operações a partir de N clientes concorrentes. Ao final mostra, por operação,
+ * ops/s e latências (p50/p99/máx.), e os bytes gravados em disco pelo repositório.
+ * <p>
+ * Uso: {@code java -cp target/classes br.com.seuapp.TesteDeCarga [produtos=100000] [clientes=4]
+ * [segundos=30] [categorias=50] [semente=42] [dir=<pasta>] [mix=consultar:60,cadastrar:15,...] [modo=direto|http]}
+ * <br>Operações do mix: consultar, cadastrar, excluir, listar (uma página), vencimento, estoque, margem, setor,
+ * buscar (texto, até 100 resultados), saida (baixa de 1 unidade; sem estoque, entrada de 100; só no modo direto).
+ * <br>Com {@code modo=http} sobe o {@link ServidorHttp} numa porta livre e os clientes fazem as mesmas
+ * operações pela API (HttpClient do JDK), medindo a vazão de ponta a ponta.
+ * <br>As opções do repositório/armazenamento (-Dprodutos.journal, -Dprodutos.writeBehind,
+ * -Dprodutos.armazenamento...) valem aqui como na aplicação.
+ */
+public class TesteDeCarga {
+    private static final String MIX_PADRAO =
+            "consultar:60,cadastrar:15,excluir:10,vencimento:4,estoque:4,margem:4,setor:3";
+    private static final Set<String> OPERACOES = Set.of("consultar", "cadastrar", "excluir", "listar", "vencimento",
+            "estoque", "margem", "setor", "buscar", "saida");
+    private static final Set<String> SO_MODO_DIRETO = Set.of("saida"); // a API não tem movimentação de estoque
+    private static final List<String> SETORES = GeradorCatalogo.setores();
+    private static final List<String> BUSCAS = List.of("arroz", "feij", "iogurte natural", "espag", "cafe", "leite 5", "bebidas");
+
+    private final ProdutoService service;
+    private final List<String> operacoes = new ArrayList<>();
+    private final int[] pesosAcumulados;
+    private final Map<String, HistogramaLatencia> latencias = new LinkedHashMap<>();
+    private final Map<String, LongAdder> erros = new HashMap<>();
+    private final AtomicLong proximoCodigo; // códigos novos para cadastrar (nunca repetem)
+    private final long semente;
+    private final int categorias;
+    private HttpClient http;   // modo=http
+    private String base;
+
+    /**
+     * O mix é conferido aqui, antes de subir os clientes: uma operação desconhecida (ou sem equivalente no modo
+     * http) derrubaria cada cliente que a sorteasse.
+     */
+    private TesteDeCarga(ProdutoService service, String mix, boolean modoHttp, long produtosIniciais, long semente,
+                         int categorias) {
+        this.service = service;
+        this.proximoCodigo = new AtomicLong(produtosIniciais);
+        this.semente = semente;
+        this.categorias = categorias;
+        var pesos = new ArrayList<Integer>();
+        int soma = 0;
+        for (var item : mix.split(",")) {
+            var partes = item.trim().split(":");
+            if (partes.length != 2) throw new IllegalArgumentException("Mix inválido (use operacao:peso): " + item);
+            String op = partes[0].trim();
+            if (!OPERACOES.contains(op)) throw new IllegalArgumentException("Operação desconhecida no mix: " + op);
+            if (modoHttp && SO_MODO_DIRETO.contains(op))
+                throw new IllegalArgumentException("Operação \"" + op + "\" só existe no modo direto.");
+            int peso = Integer.parseInt(partes[1].trim());
+            if (peso <= 0) continue;
+            operacoes.add(op);
+            soma += peso;
+            pesos.add(soma);
+            latencias.put(op, new HistogramaLatencia());
+            erros.put(op, new LongAdder());
+        }
+        if (operacoes.isEmpty()) throw new IllegalArgumentException("Mix sem operações.");
+        pesosAcumulados = pesos.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        var opcoes = new HashMap<String, String>();
+        for (var a : args) {
+            int i = a.indexOf('=');
+            if (i <= 0) throw new IllegalArgumentException("Argumento inválido (use chave=valor): " + a);
+            opcoes.put(a.substring(0, i), a.substring(i + 1));
+        }
+        int produtos = Integer.parseInt(opcoes.getOrDefault("produtos", "100000"));
+        int clientes = Integer.parseInt(opcoes.getOrDefault("clientes", "4"));
+        int segundos = Integer.parseInt(opcoes.getOrDefault("segundos", "30"));
+        int categorias = Integer.parseInt(opcoes.getOrDefault("categorias", "50"));
+        long semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        String mix = opcoes.getOrDefault("mix", MIX_PADRAO);
+        boolean modoHttp = "http".equals(opcoes.getOrDefault("modo", "direto"));
+        Path dir = opcoes.containsKey("dir") ? Path.of(opcoes.get("dir")) : Files.createTempDirectory("carga-produtos");
+        Path csv = dir.resolve("produtos.csv");
+
+        System.out.printf("Gerando %,d produtos em %s...%n", produtos, csv);
+        var gerador = new GeradorCatalogo(semente);
+        gerador.setQuantidadeCategorias(categorias);
+        new ProdutoRepository(csv).salvar(gerador.gerar(produtos));
+
+        var repo = ProdutoRepository.configurado(csv);
+        long inicioCarga = System.nanoTime();
+        var service = new ProdutoService(repo, ProdutoService.armazenamentoConfigurado());
+        System.out.printf("Carga: %d ms%n", (System.nanoTime() - inicioCarga) / 1_000_000);
+
+        var teste = new TesteDeCarga(service, mix, modoHttp, produtos, semente, categorias);
+        ServidorHttp servidor = null;
+        if (modoHttp) {
+            servidor = new ServidorHttp(service, 0);
+            servidor.iniciar();
+            // HTTP/1.1 direto: o HttpServer do JDK não fala HTTP/2, e a tentativa de upgrade só custa cabeçalhos
+            teste.http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+            teste.base = "http://localhost:" + servidor.porta();
+            System.out.println("Servidor HTTP em " + teste.base);
+        }
+        long bytesAntes = repo.getBytesGravados();
+        long duracao = teste.executar(clientes, segundos * 1_000_000_000L);
+        if (servidor != null) servidor.parar();
+        service.fechar(); // o write-behind grava o que estiver pendente: entra na conta de bytes
+        teste.relatorio(duracao, repo.getBytesGravados() - bytesAntes);
+    }
+
+    /**
+     * Roda os clientes até o prazo e devolve a duração real em nanossegundos.
+     */
+    private long executar(int clientes, long duracaoNanos) throws InterruptedException {
+        var largada = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        long[] fim = new long[1];
+        for (int c = 0; c < clientes; c++) {
+            int cliente = c;
+            var t = new Thread(() -> {
+                var gerador = new GeradorCatalogo(semente + 1 + cliente);
+                gerador.setQuantidadeCategorias(categorias);
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < fim[0]) operar(gerador);
+            }, "cliente-" + c);
+            threads.add(t);
+            t.start();
+        }
+        System.out.printf("%d clientes por %d s...%n", clientes, duracaoNanos / 1_000_000_000L);
+        long inicio = System.nanoTime();
+        fim[0] = inicio + duracaoNanos; // publicado para os clientes pela largada
+        largada.countDown();
+        for (var t : threads) t.join();
+        return System.nanoTime() - inicio;
+    }
+
+    private void operar(GeradorCatalogo gerador) {
+        var random = ThreadLocalRandom.current();
+        int sorteio = random.nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        int i = 0;
+        while (sorteio >= pesosAcumulados[i]) i++;
+        String op = operacoes.get(i);
+
+        // códigos existentes (ou já excluídos) saem da faixa já usada
+        String existente = GeradorCatalogo.codigo(random.nextLong(Math.max(1, proximoCodigo.get())));
+        long t0 = System.nanoTime();
+        if (http != null) {
+            if (!operarHttp(op, existente, gerador, random)) erros.get(op).increment();
+            latencias.get(op).registrar(System.nanoTime() - t0);
+            return;
+        }
+        try {
+            switch (op) {
+                case "consultar" -> service.consultar(existente);
+                case "cadastrar" -> service.cadastrar(gerador.produto(proximoCodigo.getAndIncrement()));
+                case "excluir" -> service.excluir(existente);
+                case "listar" -> service.listar(random.nextInt(Math.max(1, service.quantidade())), 200);
+                case "vencimento" -> service.proximosAVencer(60);
+                case "estoque" -> service.estoqueBaixo(10);
+                case "margem" -> {
+                    service.margemMediaPorCategoria();
+                    service.margemMediaPorSetor();
+                }
+                case "setor" -> service.listarPorSetor(SETORES.get(random.nextInt(SETORES.size())));
+                case "buscar" -> service.buscar(BUSCAS.get(random.nextInt(BUSCAS.size())), 100);
+                case "saida" -> {
+                    if (service.saida(existente, 1).isEmpty()) service.entrada(existente, 100);
+                }
+                default -> throw new IllegalArgumentException("Operação desconhecida: " + op);
+            }
+        } catch (IllegalArgumentException e) {
+            erros.get(op).increment();
+        }
+        latencias.get(op).registrar(System.nanoTime() - t0);
+    }
+
+    /**
+     * Mesma operação pela API; devolve false em erro (404 de consultar/excluir não é erro).
+     */
+    private boolean operarHttp(String op, String existente, GeradorCatalogo gerador, ThreadLocalRandom random) {
+        var req = switch (op) {
+            case "consultar" -> HttpRequest.newBuilder(URI.create(base + "/produtos/" + existente)).GET();
+            case "cadastrar" -> HttpRequest.newBuilder(URI.create(base + "/produtos"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            Json.escrever(ServidorHttp.mapa(gerador.produto(proximoCodigo.getAndIncrement())))));
+            case "excluir" -> HttpRequest.newBuilder(URI.create(base + "/produtos/" + existente)).DELETE();
+            case "listar" -> HttpRequest.newBuilder(URI.create(base + "/produtos?quantidade=200&inicio="
+                    + random.nextInt(Math.max(1, service.quantidade())))).GET();
+            case "vencimento" -> HttpRequest.newBuilder(URI.create(base + "/relatorios/vencimento?dias=60")).GET();
+            case "estoque" -> HttpRequest.newBuilder(URI.create(base + "/relatorios/estoque?limite=10")).GET();
+            case "margem" -> HttpRequest.newBuilder(URI.create(base + "/relatorios/margem")).GET();
+            case "setor" -> HttpRequest.newBuilder(URI.create(base + "/relatorios/setor?setor="
+                    + URLEncoder.encode(SETORES.get(random.nextInt(SETORES.size())), StandardCharsets.UTF_8))).GET();
+            case "buscar" -> HttpRequest.newBuilder(URI.create(base + "/produtos?quantidade=100&busca="
+                    + URLEncoder.encode(BUSCAS.get(random.nextInt(BUSCAS.size())), StandardCharsets.UTF_8))).GET();
+            default -> throw new IllegalArgumentException("Operação desconhecida: " + op);
+        };
+        try {
+            int status = http.send(req.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status < 400 || (status == 404 && (op.equals("consultar") || op.equals("excluir")));
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void relatorio(long duracaoNanos, long bytesGravados) {
+        double segundos = duracaoNanos / 1e9;
+        long total = 0;
+        System.out.printf("%n%-12s %10s %10s %10s %10s %10s %8s%n", "operação", "qtd", "ops/s", "p50 µs", "p99 µs", "máx. µs", "erros");
+        for (var e : latencias.entrySet()) {
+            var h = e.getValue();
+            total += h.quantidade();
+            System.out.printf("%-12s %,10d %,10.0f %,10.1f %,10.1f %,10.1f %,8d%n", e.getKey(), h.quantidade(),
+                    h.quantidade() / segundos, h.percentil(0.50) / 1e3, h.percentil(0.99) / 1e3, h.maximo() / 1e3,
+                    erros.get(e.getKey()).sum());
+        }
+        System.out.printf("%-12s %,10d %,10.0f%n", "total", total, total / segundos);
+        System.out.printf("%nBytes gravados: %,d (%,.1f MB/s), %,.0f bytes por alteração%n", bytesGravados,
+                bytesGravados / segundos / (1024 * 1024),
+                (double) bytesGravados / Math.max(1, alteracoes()));
+        System.out.printf("Produtos no catálogo: %,d%n", service.quantidade());
+    }
+
+    private long alteracoes() {
+        long n = 0;
+        for (var op : List.of("cadastrar", "excluir")) {
+            var h = latencias.get(op);
+            if (h != null) n += h.quantidade();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,48 @@
+package br.com.seuapp.controller;
+
+import br.com.seuapp.model.Produto;
+
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Uma linha da tabela com os textos já formatados: a formatação de datas e valores é feita uma vez,
+ * quando a página é carregada, e não a cada vez que a célula é desenhada.
+ */
+record LinhaProduto(String codigo, String nome, String descricao, String fabricacao, String validade,
+                    String compra, String venda, Integer quantidade,
+                    Integer catId, String catNome, String catDesc, String catSetor) {
+
+    private static final DateTimeFormatter DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /**
+     * Linha mostrada enquanto a página ainda está sendo buscada.
+     */
+    static final LinhaProduto CARREGANDO = new LinhaProduto("...", "", "", "", "", "", "", null, null, "", "", "");
+
+    /**
+     * Formatador de valores (pt-BR, 2 casas). NumberFormat não é thread-safe: criar um por página.
+     */
+    static NumberFormat formatoMoeda() {
+        var money = NumberFormat.getNumberInstance(new Locale("pt", "BR"));
+        money.setMinimumFractionDigits(2);
+        money.setMaximumFractionDigits(2);
+        return money;
+    }
+
+    static LinhaProduto de(Produto p, NumberFormat money) {
+        var c = p.getCategoria();
+        return new LinhaProduto(
+                p.getCodigo(), p.getNome(), p.getDescricao(),
+                p.getDataFabricacao() != null ? p.getDataFabricacao().format(DATA) : "",
+                p.getDataValidade() != null ? p.getDataValidade().format(DATA) : "",
+                p.getPrecoCompra() != null ? money.format(p.getPrecoCompra()) : "",
+                p.getPrecoVenda() != null ? money.format(p.getPrecoVenda()) : "",
+                p.getQuantidadeEstoque(),
+                c != null ? c.getId() : 0,
+                c != null ? c.getNome() : "",
+                c != null ? c.getDescricao() : "",
+                c != null ? c.getSetor() : "");
+    }
+}
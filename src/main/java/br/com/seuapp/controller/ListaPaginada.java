@@ -0,0 +1,101 @@
+package br.com.seuapp.controller;
+
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.service.ProdutoService;
+import javafx.collections.ObservableListBase;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Lista da tabela que busca as linhas por páginas, sob demanda: a TableView só pede as linhas visíveis,
+ * e a página que falta é buscada em segundo plano (a linha aparece como "..." até chegar).
+ * Só as últimas {@value #PAGINAS_EM_CACHE} páginas ficam em memória, qualquer que seja o tamanho do resultado.
+ * <p>
+ * O tamanho é fixado na criação: depois de uma alteração no catálogo a tela cria uma lista nova. Criada sobre um
+ * {@link ProdutoService.Retrato}, todas as páginas vêm da mesma versão do catálogo, sem linhas repetidas ou puladas.
+ * Deve ser usada só na thread do JavaFX.
+ */
+class ListaPaginada extends ObservableListBase<LinhaProduto> {
+    static final int TAMANHO_PAGINA = 200;
+    private static final int PAGINAS_EM_CACHE = 32;
+
+    private final int tamanho;
+    private final BiFunction<Integer, Integer, List<Produto>> fonte; // (início, quantidade) -> produtos
+    private final TarefasFX tarefas;
+    private final Set<Integer> pedidas = new HashSet<>();
+    private final Map<Integer, LinhaProduto[]> paginas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, LinhaProduto[]> e) {
+            return size() > PAGINAS_EM_CACHE;
+        }
+    };
+    private boolean descartada;
+
+    ListaPaginada(int tamanho, BiFunction<Integer, Integer, List<Produto>> fonte, TarefasFX tarefas) {
+        this.tamanho = tamanho;
+        this.fonte = fonte;
+        this.tarefas = tarefas;
+    }
+
+    /**
+     * Lista sobre a listagem ou um relatório, página a página. A quantidade do retrato já deve ter sido
+     * contada (fora da thread do JavaFX).
+     */
+    static ListaPaginada de(ProdutoService.Retrato retrato, TarefasFX tarefas) {
+        return new ListaPaginada(retrato.quantidade(), retrato::pagina, tarefas);
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    @Override
+    public LinhaProduto get(int i) {
+        Objects.checkIndex(i, tamanho);
+        int p = i / TAMANHO_PAGINA;
+        var pagina = paginas.get(p);
+        if (pagina == null) {
+            pedir(p);
+            return LinhaProduto.CARREGANDO;
+        }
+        var linha = pagina[i % TAMANHO_PAGINA];
+        return linha != null ? linha : LinhaProduto.CARREGANDO; // catálogo encolheu desde a criação
+    }
+
+    /**
+     * Ignora as páginas que ainda estão a caminho (a tabela passou a mostrar outra lista).
+     */
+    void descartar() {
+        descartada = true;
+        paginas.clear();
+    }
+
+    private void pedir(int p) {
+        if (descartada || !pedidas.add(p)) return;
+        int inicio = p * TAMANHO_PAGINA;
+        int qtd = Math.min(TAMANHO_PAGINA, tamanho - inicio);
+        tarefas.emParalelo(() -> {
+            var money = LinhaProduto.formatoMoeda();
+            var linhas = new LinhaProduto[qtd];
+            int j = 0;
+            for (var prod : fonte.apply(inicio, qtd)) {
+                if (j == qtd) break;
+                linhas[j++] = LinhaProduto.de(prod, money);
+            }
+            return linhas;
+        }, linhas -> {
+            pedidas.remove(p);
+            if (descartada) return;
+            paginas.put(p, linhas);
+            // avisa a tabela que as linhas "..." da página foram trocadas
+            beginChange();
+            nextReplace(inicio, inicio + qtd, Collections.nCopies(qtd, LinhaProduto.CARREGANDO));
+            endChange();
+        }, e -> {
+            pedidas.remove(p);
+            e.printStackTrace();
+        });
+    }
+}
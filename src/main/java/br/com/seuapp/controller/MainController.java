@@ -3,34 +3,48 @@ package br.com.seuapp.controller;
 import br.com.seuapp.model.Categoria;
 import br.com.seuapp.model.Produto;
 import br.com.seuapp.service.ProdutoService;
+import br.com.seuapp.service.ProdutoService.Consulta;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.FileChooser;
 
 import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 public class MainController {
 
     @FXML private TextField txtCodigo, txtNome, txtDescricao, txtPrecoCompra, txtPrecoVenda, txtQuantidade;
     @FXML private TextField txtCatId, txtCatNome, txtCatDesc, txtCatSetor;
     @FXML private DatePicker dpFabricacao, dpValidade;
+    @FXML private TextField txtBusca;
 
-    @FXML private TableView<Produto> tblProdutos;
+    @FXML private TableView<LinhaProduto> tblProdutos;
 
     // Colunas da tabela (versão completa)
-    @FXML private TableColumn<Produto, String> colCodigo, colNome, colDescricao;
-    @FXML private TableColumn<Produto, String> colFab, colVal;          // datas formatadas como String
-    @FXML private TableColumn<Produto, String> colCompra, colVenda;     // preços formatados como String
-    @FXML private TableColumn<Produto, Integer> colQtde;                // quantidade
-    @FXML private TableColumn<Produto, Number> colCatId;                // usa SimpleIntegerProperty
-    @FXML private TableColumn<Produto, String> colCatNome, colCatDesc, colCatSetor;
+    @FXML private TableColumn<LinhaProduto, String> colCodigo, colNome, colDescricao;
+    @FXML private TableColumn<LinhaProduto, String> colFab, colVal;          // datas formatadas como String
+    @FXML private TableColumn<LinhaProduto, String> colCompra, colVenda;     // preços formatados como String
+    @FXML private TableColumn<LinhaProduto, Integer> colQtde;                // quantidade
+    @FXML private TableColumn<LinhaProduto, Integer> colCatId;
+    @FXML private TableColumn<LinhaProduto, String> colCatNome, colCatDesc, colCatSetor;
+
+    @FXML private ProgressIndicator indOcupado;
 
 
 
     private ProdutoService service;
+    private static final int LIMITE_BUSCA = 1000;
+    // o que está na tabela (para o Exportar); null = tabela vazia
+    private Consulta consultaNaTabela;
+    // chamadas ao serviço rodam fora da thread do JavaFX
+    private final TarefasFX tarefas = new TarefasFX();
 
     @FXML
     public void initialize() {
@@ -38,71 +52,22 @@ public class MainController {
         Path csv = Path.of("src/main/resources/data/produtos.csv");
         service = new ProdutoService(csv);
 
-        // ====== Formatações ======
-        var fmtData = java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        var money   = java.text.NumberFormat.getNumberInstance(new java.util.Locale("pt","BR"));
-        money.setMinimumFractionDigits(2);
-        money.setMaximumFractionDigits(2);
-
-        // ====== Colunas - propriedades diretas ======
-        colCodigo.setCellValueFactory(new PropertyValueFactory<>("codigo"));
-        colNome.setCellValueFactory(new PropertyValueFactory<>("nome"));
-        colDescricao.setCellValueFactory(new PropertyValueFactory<>("descricao"));
-        colQtde.setCellValueFactory(new PropertyValueFactory<>("quantidadeEstoque"));
-
-        // ====== Colunas - datas ======
-        colFab.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getDataFabricacao() != null
-                                ? p.getValue().getDataFabricacao().format(fmtData)
-                                : ""
-                )
-        );
-        colVal.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getDataValidade() != null
-                                ? p.getValue().getDataValidade().format(fmtData)
-                                : ""
-                )
-        );
-
-        // ====== Colunas - preços (String formatada) ======
-        colCompra.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getPrecoCompra() != null
-                                ? money.format(p.getValue().getPrecoCompra())
-                                : ""
-                )
-        );
-        colVenda.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getPrecoVenda() != null
-                                ? money.format(p.getValue().getPrecoVenda())
-                                : ""
-                )
-        );
-
-        // ====== Colunas - categoria (aninhadas) ======
-        colCatId.setCellValueFactory(p ->
-                new javafx.beans.property.SimpleIntegerProperty(
-                        p.getValue().getCategoria() != null ? p.getValue().getCategoria().getId() : 0
-                )
-        );
-        colCatNome.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getCategoria() != null ? p.getValue().getCategoria().getNome() : ""
-                )
-        );
-        colCatDesc.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getCategoria() != null ? p.getValue().getCategoria().getDescricao() : ""
-                )
-        );
-        colCatSetor.setCellValueFactory(p ->
-                javafx.beans.binding.Bindings.createStringBinding(
-                        () -> p.getValue().getCategoria() != null ? p.getValue().getCategoria().getSetor() : ""
-                )
-        );
+        // ====== Colunas ======
+        // valores já formatados em LinhaProduto (sem reflexão nem formatação a cada desenho da célula)
+        coluna(colCodigo, LinhaProduto::codigo);
+        coluna(colNome, LinhaProduto::nome);
+        coluna(colDescricao, LinhaProduto::descricao);
+        coluna(colFab, LinhaProduto::fabricacao);
+        coluna(colVal, LinhaProduto::validade);
+        coluna(colCompra, LinhaProduto::compra);
+        coluna(colVenda, LinhaProduto::venda);
+        coluna(colQtde, LinhaProduto::quantidade);
+        coluna(colCatId, LinhaProduto::catId);
+        coluna(colCatNome, LinhaProduto::catNome);
+        coluna(colCatDesc, LinhaProduto::catDesc);
+        coluna(colCatSetor, LinhaProduto::catSetor);
+        // a lista é paginada (não dá para reordenar em memória): ordenação vem dos relatórios
+        tblProdutos.getColumns().forEach(c -> c.setSortable(false));
 
         // (opcional) Limitadores de entrada
         txtQuantidade.setTextFormatter(new TextFormatter<>(c -> c.getControlNewText().matches("\\d*") ? c : null));
@@ -110,16 +75,29 @@ public class MainController {
         txtPrecoCompra.setTextFormatter(new TextFormatter<>(c -> c.getControlNewText().matches("[\\d., R$]*") ? c : null));
         txtPrecoVenda.setTextFormatter(new TextFormatter<>(c -> c.getControlNewText().matches("[\\d., R$]*") ? c : null));
 
+        indOcupado.visibleProperty().bind(tarefas.ocupadoProperty());
+
         // Tabela começa vazia — só mostra quando clicar em "Listar" ou relatórios
         limparTabela();
     }
 
 
     private void limparTabela() {
-        tblProdutos.setItems(FXCollections.observableArrayList());
+        tarefas.descartarConsultas(); // uma listagem ainda em andamento não deve repor dados antigos
+        consultaNaTabela = null;
+        mostrar(FXCollections.observableArrayList());
         tblProdutos.refresh();
     }
 
+    private void mostrar(ObservableList<LinhaProduto> linhas) {
+        if (tblProdutos.getItems() instanceof ListaPaginada anterior) anterior.descartar();
+        tblProdutos.setItems(linhas);
+    }
+
+    private static <T> void coluna(TableColumn<LinhaProduto, T> col, Function<LinhaProduto, T> valor) {
+        col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(valor.apply(c.getValue())));
+    }
+
 
     private BigDecimal parseMoney(String raw, String msgErro) {
         if (raw == null) throw new IllegalArgumentException(msgErro);
@@ -144,10 +122,6 @@ public class MainController {
     }
 
 
-    private void atualizarTabela() {
-        tblProdutos.setItems(FXCollections.observableArrayList(service.listar()));
-    }
-
     private Produto lerFormulario() {
         var p = new Produto();
 
@@ -185,28 +159,32 @@ public class MainController {
     // Botões
     @FXML
     private void onCadastrar() {
+        Produto p;
         try {
-            var p = lerFormulario();
-            service.cadastrar(p);
-            limparTabela(); // não lista automaticamente
-            alertInfo("Sucesso", "Produto cadastrado/atualizado.");
+            p = lerFormulario();
         } catch (Exception e) {
             alertErro("Erro ao cadastrar", e.getMessage());
+            return;
         }
+        tarefas.emOrdem(() -> { service.cadastrar(p); return p; }, ok -> {
+            limparTabela(); // não lista automaticamente
+            alertInfo("Sucesso", "Produto cadastrado/atualizado.");
+        }, e -> alertErro("Erro ao cadastrar", e.getMessage()));
     }
 
 
     @FXML
     private void onConsultar() {
         var codigo = txtCodigo.getText().trim();
-        var opt = service.consultar(codigo);
-        if (opt.isPresent()) {
-            var p = opt.get();
-            preencherFormulario(p);
-            alertInfo("Consulta", "Produto encontrado.");
-        } else {
-            alertInfo("Consulta", "Produto não encontrado.");
-        }
+        // em ordem: enxerga os cadastros/exclusões clicados antes
+        tarefas.emOrdem(() -> service.consultar(codigo), opt -> {
+            if (opt.isPresent()) {
+                preencherFormulario(opt.get());
+                alertInfo("Consulta", "Produto encontrado.");
+            } else {
+                alertInfo("Consulta", "Produto não encontrado.");
+            }
+        }, e -> alertErro("Erro na consulta", e.getMessage()));
     }
 
     @FXML
@@ -214,45 +192,115 @@ public class MainController {
         var codigo = txtCodigo.getText().trim();
         if (codigo.isEmpty()) { alertInfo("Exclusão", "Informe o código para excluir."); return; }
 
-        boolean ok = service.excluir(codigo);
-        limparTabela(); // não lista automaticamente
+        tarefas.emOrdem(() -> service.excluir(codigo), ok -> {
+            limparTabela(); // não lista automaticamente
 
-        if (ok) {
-            alertInfo("Exclusão", "Produto " + codigo + " removido com sucesso.");
-            // (opcional) limpar formulário...
-        } else {
-            alertInfo("Exclusão", "Nenhum produto com código " + codigo + " foi encontrado.");
-        }
+            if (ok) {
+                alertInfo("Exclusão", "Produto " + codigo + " removido com sucesso.");
+                // (opcional) limpar formulário...
+            } else {
+                alertInfo("Exclusão", "Nenhum produto com código " + codigo + " foi encontrado.");
+            }
+        }, e -> alertErro("Erro ao excluir", e.getMessage()));
     }
 
 
 
     @FXML
     private void onListar() {
-        atualizarTabela();             // agora SÓ aqui lista tudo
-        alertInfo("Listagem", "Lista atualizada.");
+        // agora SÓ aqui lista tudo; as linhas são buscadas por página, conforme a rolagem
+        mostrarNaTabela(() -> service.retrato(Consulta.todos()), total -> alertInfo("Listagem", "Lista atualizada."));
+    }
+
+
+
+    @FXML
+    private void onBuscar() {
+        String texto = txtBusca.getText();
+        if (texto == null || texto.isBlank()) {
+            alertInfo("Buscar", "Digite parte do nome, da descrição ou da categoria.");
+            return;
+        }
+        // sem alerta a cada busca: a tabela já mostra o resultado
+        mostrarNaTabela(() -> service.retrato(Consulta.busca(texto, LIMITE_BUSCA)), total -> {
+            if (total == 0) alertInfo("Buscar", "Nenhum produto encontrado para \"" + texto.trim() + "\".");
+        });
     }
 
+    @FXML
+    private void onImportar() {
+        var chooser = new FileChooser();
+        chooser.setTitle("Importar produtos (CSV)");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv", "*.csv.gz"));
+        var arquivo = chooser.showOpenDialog(tblProdutos.getScene().getWindow());
+        if (arquivo == null) return;
+
+        var confirma = new Alert(Alert.AlertType.CONFIRMATION,
+                "Substituir os produtos que já estão cadastrados com o mesmo código?",
+                ButtonType.YES, ButtonType.NO);
+        confirma.setTitle("Importar");
+        confirma.setHeaderText(null);
+        boolean substituir = confirma.showAndWait().orElse(ButtonType.NO) == ButtonType.YES;
+
+        var origem = arquivo.toPath();
+        tarefas.emOrdem(() -> service.importar(origem, substituir), r -> {
+            limparTabela();
+            var msg = new StringBuilder()
+                    .append("Linhas lidas: ").append(r.linhasLidas())
+                    .append("\nImportados: ").append(r.importados())
+                    .append("\nRecusados: ").append(r.erros().size());
+            r.erros().stream().limit(20).forEach(e ->
+                    msg.append("\n  linha ").append(e.linha()).append(": ").append(e.mensagem()));
+            if (r.erros().size() > 20) msg.append("\n  ...");
+            alertInfo("Importação", msg.toString());
+        }, e -> alertErro("Erro ao importar", e.getMessage()));
+    }
 
+    /**
+     * Grava em CSV o que está na tabela (a listagem ou o relatório); com a tabela vazia, o catálogo inteiro.
+     * O arquivo é escrito direto do catálogo, em blocos, sem passar pela tabela.
+     */
+    @FXML
+    private void onExportar() {
+        var consulta = consultaNaTabela != null ? consultaNaTabela : Consulta.todos();
+        var chooser = new FileChooser();
+        chooser.setTitle("Exportar produtos (CSV)");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv", "*.csv.gz"));
+        chooser.setInitialFileName("produtos-exportados.csv");
+        var arquivo = chooser.showSaveDialog(tblProdutos.getScene().getWindow());
+        if (arquivo == null) return;
+
+        var destino = arquivo.toPath();
+        tarefas.emOrdem(() -> service.exportar(consulta, destino),
+                linhas -> alertInfo("Exportar", "Produtos exportados: " + linhas + "\n" + destino),
+                e -> alertErro("Erro ao exportar", e.getMessage()));
+    }
 
     @FXML
     private void onRelatorioVencimento() {
-        var lista = service.proximosAVencer(60);
-        tblProdutos.setItems(FXCollections.observableArrayList(lista));
-        alertInfo("Relatório", "Produtos que vencem nos próximos 60 dias: " + lista.size());
+        int[] vencidos = {0};
+        mostrarNaTabela(() -> {
+            vencidos[0] = service.quantidadeVencidos();
+            return service.retrato(Consulta.proximosAVencer(60));
+        }, total -> alertInfo("Relatório", "Produtos que vencem nos próximos 60 dias: " + total
+                + "\nJá vencidos: " + vencidos[0]));
     }
 
     @FXML
     private void onRelatorioEstoque() {
-        var lista = service.estoqueBaixo(10);
-        tblProdutos.setItems(FXCollections.observableArrayList(lista));
-        alertInfo("Relatório", "Produtos com estoque baixo (<10): " + lista.size());
+        mostrarNaTabela(() -> service.retrato(Consulta.estoqueBaixo(10)),
+                total -> alertInfo("Relatório", "Produtos com estoque baixo (<10): " + total));
     }
 
     @FXML
     private void onRelatorioMargem() {
-        var mapa = service.margemMediaPorCategoria();
-        alertInfo("Margem média por categoria", mapa.toString());
+        tarefas.substituindo(() -> {
+            var mapa = service.margemMediaPorCategoria();
+            var geral = service.resumoMargemGeral()
+                    .map(r -> "\n\nGeral: média " + r.media() + " (mín. " + r.minima() + ", máx. " + r.maxima() + ", " + r.quantidade() + " produtos)")
+                    .orElse("");
+            return mapa + "\n\nPor setor: " + service.margemMediaPorSetor() + geral;
+        }, texto -> alertInfo("Margem média por categoria", texto), e -> alertErro("Erro no relatório", e.getMessage()));
     }
 
     @FXML
@@ -262,12 +310,35 @@ public class MainController {
             alertInfo("Listar por setor", "Preencha o campo \"Categoria: Setor\" para filtrar.");
             return;
         }
-        var lista = service.listarPorSetor(setor);
-        tblProdutos.setItems(FXCollections.observableArrayList(lista));
-        alertInfo("Listar por setor", "Itens no setor \"" + setor.trim() + "\": " + lista.size());
+        mostrarNaTabela(() -> service.retrato(Consulta.setor(setor)),
+                total -> alertInfo("Listar por setor", "Itens no setor \"" + setor.trim() + "\": " + total));
+    }
+
+    /**
+     * Abre a consulta e conta o resultado em segundo plano, e só então a coloca na tabela; um novo clique descarta
+     * a busca anterior. As linhas são buscadas (e formatadas) por página, conforme a rolagem, todas do mesmo retrato.
+     */
+    private void mostrarNaTabela(Callable<ProdutoService.Retrato> abrir, IntConsumer depois) {
+        tarefas.substituindo(() -> {
+            var retrato = abrir.call();
+            retrato.quantidade();
+            return retrato;
+        }, retrato -> {
+            mostrar(ListaPaginada.de(retrato, tarefas));
+            consultaNaTabela = retrato.consulta();
+            depois.accept(retrato.quantidade());
+        }, e -> alertErro("Erro ao listar", e.getMessage()));
     }
 
 
+    /**
+     * Chamado pelo MainApp ao fechar a janela: grava o que ainda estiver pendente.
+     */
+    public void encerrar() {
+        tarefas.encerrar(10_000);
+        if (service != null) service.fechar();
+    }
+
     private void preencherFormulario(Produto p) {
         txtCodigo.setText(p.getCodigo());
         txtNome.setText(p.getNome());
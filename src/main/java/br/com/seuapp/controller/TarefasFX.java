@@ -0,0 +1,108 @@
+package br.com.seuapp.controller;
+
+import br.com.seuapp.util.Executores;
+import javafx.application.Platform;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Executa as chamadas ao serviço fora da thread do JavaFX e devolve o resultado nela (Platform.runLater).
+ * <p>
+ * Dois tipos de tarefa:
+ * <ul>
+ *   <li>{@link #emOrdem}: alterações (e consultas que precisam enxergá-las); rodam uma por vez, na ordem
+ *       dos cliques, e nunca são descartadas;</li>
+ *   <li>{@link #substituindo}: consultas que preenchem a tabela; uma nova cancela a anterior, e resultado
+ *       de consulta superada não é mostrado;</li>
+ *   <li>{@link #emParalelo}: buscas independentes, como as páginas da tabela.</li>
+ * </ul>
+ * Todos os métodos devem ser chamados na thread do JavaFX.
+ */
+class TarefasFX {
+    private final ExecutorService ordenado = Executores.sequencial("produtos-alteracoes");
+    private final ExecutorService consultas = Executores.porTarefa("produtos-consultas");
+    private final IntegerProperty emAndamento = new SimpleIntegerProperty();
+    private final BooleanBinding ocupado = emAndamento.greaterThan(0);
+    private long geracao;          // incrementada a cada consulta nova ou descarte
+    private Future<?> consultaAtual;
+
+    /**
+     * Verdadeiro enquanto houver tarefa em andamento (para o indicador de ocupado).
+     */
+    BooleanBinding ocupadoProperty() { return ocupado; }
+
+    <T> void emOrdem(Callable<T> tarefa, Consumer<T> aoConcluir, Consumer<Throwable> aoFalhar) {
+        submeter(ordenado, tarefa, aoConcluir, aoFalhar, -1);
+    }
+
+    <T> void substituindo(Callable<T> tarefa, Consumer<T> aoConcluir, Consumer<Throwable> aoFalhar) {
+        descartarConsultas();
+        consultaAtual = submeter(consultas, tarefa, aoConcluir, aoFalhar, geracao);
+    }
+
+    /**
+     * Tarefa independente das demais (ex.: páginas da tabela): roda em paralelo e não é descartada aqui;
+     * quem pediu decide se o resultado ainda interessa.
+     */
+    <T> void emParalelo(Callable<T> tarefa, Consumer<T> aoConcluir, Consumer<Throwable> aoFalhar) {
+        submeter(consultas, tarefa, aoConcluir, aoFalhar, -1);
+    }
+
+    /**
+     * Cancela a consulta em andamento; se ela já tiver terminado, o resultado não é mais aplicado.
+     */
+    void descartarConsultas() {
+        geracao++;
+        if (consultaAtual != null) consultaAtual.cancel(true);
+        consultaAtual = null;
+    }
+
+    /**
+     * Descarta as consultas e espera as alterações já enviadas terminarem (até o limite informado).
+     */
+    void encerrar(long esperaMs) {
+        descartarConsultas();
+        consultas.shutdownNow();
+        ordenado.shutdown();
+        try {
+            if (!ordenado.awaitTermination(esperaMs, TimeUnit.MILLISECONDS)) {
+                System.err.println("Alterações ainda em andamento ao encerrar.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // geracaoDaConsulta < 0: tarefa em ordem, nunca descartada
+    private <T> Future<?> submeter(ExecutorService executor, Callable<T> tarefa, Consumer<T> aoConcluir,
+                                   Consumer<Throwable> aoFalhar, long geracaoDaConsulta) {
+        emAndamento.set(emAndamento.get() + 1);
+        var ft = new FutureTask<T>(tarefa) {
+            @Override
+            protected void done() {
+                // chamado ao terminar ou ao ser cancelada (inclusive antes de começar)
+                Platform.runLater(() -> {
+                    emAndamento.set(emAndamento.get() - 1);
+                    if (isCancelled() || (geracaoDaConsulta >= 0 && geracaoDaConsulta != geracao)) return;
+                    try {
+                        aoConcluir.accept(get());
+                    } catch (ExecutionException e) {
+                        aoFalhar.accept(e.getCause());
+                    } catch (InterruptedException | CancellationException e) {
+                        // superada
+                    }
+                });
+            }
+        };
+        try {
+            executor.execute(ft);
+        } catch (RejectedExecutionException e) {
+            ft.cancel(false); // já encerrando
+        }
+        return ft;
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.seuapp.metricas;
+
+import java.util.Map;
+
+/**
+ * Tamanho do catálogo em memória e dos seus índices.
+ */
+public interface CatalogoMXBean {
+    int getProdutos();
+
+    /**
+     * Entradas de cada índice do armazenamento (nome do índice -> tamanho).
+     */
+    Map<String, Integer> getIndices();
+
+    int getCategoriasCanonicas();
+    int getTextosCompartilhados();
+    long getBytesEconomizados();
+}
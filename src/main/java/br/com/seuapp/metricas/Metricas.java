@@ -0,0 +1,34 @@
+package br.com.seuapp.metricas;
+
+/**
+ * Métricas de operação do processo (compartilhadas por todas as instâncias do serviço/repositório).
+ * O registro não aloca nem trava: pode ficar ligado em produção.
+ * <pre>
+ * long inicio = System.nanoTime();
+ * try { ... } finally { Metricas.registrar(Operacao.CONSULTAR, inicio); }
+ * </pre>
+ */
+public final class Metricas {
+    private static final MetricasOperacao[] OPERACOES = new MetricasOperacao[Operacao.values().length];
+
+    static {
+        for (int i = 0; i < OPERACOES.length; i++) OPERACOES[i] = new MetricasOperacao();
+    }
+
+    private Metricas() {}
+
+    /**
+     * Registra a duração da operação iniciada em {@code inicioNanos} (valor de System.nanoTime()).
+     */
+    public static void registrar(Operacao op, long inicioNanos) {
+        OPERACOES[op.ordinal()].registrar(System.nanoTime() - inicioNanos);
+    }
+
+    public static void falha(Operacao op) {
+        OPERACOES[op.ordinal()].falha();
+    }
+
+    public static MetricasOperacao de(Operacao op) {
+        return OPERACOES[op.ordinal()];
+    }
+}
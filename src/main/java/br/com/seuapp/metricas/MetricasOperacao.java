@@ -0,0 +1,32 @@
+package br.com.seuapp.metricas;
+
+import br.com.seuapp.util.HistogramaLatencia;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latência e contador de erros de uma operação.
+ */
+public class MetricasOperacao implements MetricasOperacaoMXBean {
+    private final HistogramaLatencia latencias = new HistogramaLatencia();
+    private final LongAdder erros = new LongAdder();
+
+    void registrar(long nanos) { latencias.registrar(nanos); }
+
+    void falha() { erros.increment(); }
+
+    @Override public long getQuantidade() { return latencias.quantidade(); }
+    @Override public long getErros() { return erros.sum(); }
+    @Override public double getMediaMicros() { return latencias.media() / 1e3; }
+    @Override public double getP50Micros() { return latencias.percentil(0.50) / 1e3; }
+    @Override public double getP90Micros() { return latencias.percentil(0.90) / 1e3; }
+    @Override public double getP99Micros() { return latencias.percentil(0.99) / 1e3; }
+    @Override public double getP999Micros() { return latencias.percentil(0.999) / 1e3; }
+    @Override public double getMaximoMicros() { return latencias.maximo() / 1e3; }
+
+    @Override
+    public void zerar() {
+        latencias.zerar();
+        erros.reset();
+    }
+}
@@ -0,0 +1,16 @@
+package br.com.seuapp.metricas;
+
+/**
+ * Contagem e latências de uma operação (em microssegundos, desde o início ou o último {@link #zerar()}).
+ */
+public interface MetricasOperacaoMXBean {
+    long getQuantidade();
+    long getErros();
+    double getMediaMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaximoMicros();
+    void zerar();
+}
@@ -0,0 +1,67 @@
+package br.com.seuapp.metricas;
+
+import br.com.seuapp.repository.ProdutoRepository;
+import br.com.seuapp.service.ProdutoService;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Publica as métricas no MBeanServer da plataforma (JConsole/VisualVM, domínio "br.com.seuapp"):
+ * <ul>
+ *   <li>{@code type=Operacao,name=<operacao>}: contagem, erros e latências (p50/p90/p99/p99.9/máx.);</li>
+ *   <li>{@code type=Catalogo}: produtos, índices e categorias compartilhadas;</li>
+ *   <li>{@code type=Repositorio}: linhas lidas e bytes gravados.</li>
+ * </ul>
+ * Catálogo e repositório são os do último serviço publicado. -Dprodutos.jmx=false desliga a publicação.
+ */
+public final class Monitoramento {
+    private static final String DOMINIO = "br.com.seuapp";
+
+    private Monitoramento() {}
+
+    public static void publicar(ProdutoService service, ProdutoRepository repo) {
+        if ("false".equalsIgnoreCase(System.getProperty("produtos.jmx"))) return;
+        try {
+            for (var op : Operacao.values()) {
+                registrar(new ObjectName(DOMINIO + ":type=Operacao,name=" + op.nome()), Metricas.de(op), false);
+            }
+            registrar(new ObjectName(DOMINIO + ":type=Catalogo"),
+                    new StandardMBean(new Catalogo(service, repo), CatalogoMXBean.class, true), true);
+            registrar(new ObjectName(DOMINIO + ":type=Repositorio"),
+                    new StandardMBean(new Repositorio(repo), RepositorioMXBean.class, true), true);
+        } catch (JMException e) {
+            e.printStackTrace(); // sem monitoramento, mas a aplicação segue
+        }
+    }
+
+    private static void registrar(ObjectName nome, Object mbean, boolean substituir) throws JMException {
+        var servidor = ManagementFactory.getPlatformMBeanServer();
+        if (servidor.isRegistered(nome)) {
+            if (!substituir) return;
+            servidor.unregisterMBean(nome);
+        }
+        servidor.registerMBean(mbean, nome);
+    }
+
+    private record Catalogo(ProdutoService service, ProdutoRepository repo) implements CatalogoMXBean {
+        @Override public int getProdutos() { return service.quantidade(); }
+        @Override public Map<String, Integer> getIndices() { return service.tamanhosDosIndices(); }
+        @Override public int getCategoriasCanonicas() { return repo.getCategorias().estatisticas().categorias(); }
+        @Override public int getTextosCompartilhados() { return repo.getCategorias().estatisticas().textos(); }
+        @Override public long getBytesEconomizados() { return repo.getCategorias().estatisticas().bytesEconomizados(); }
+    }
+
+    private record Repositorio(ProdutoRepository repo) implements RepositorioMXBean {
+        @Override public String getArquivo() { return repo.getArquivo().toString(); }
+        @Override public long getLinhasLidas() { return repo.getLinhasLidas(); }
+        @Override public long getLinhasUltimaCarga() { return repo.getLinhasUltimaCarga(); }
+        @Override public long getGravacoes() { return repo.getGravacoes(); }
+        @Override public long getBytesGravados() { return repo.getBytesGravados(); }
+        @Override public long getBytesUltimaGravacao() { return repo.getBytesUltimaGravacao(); }
+        @Override public long getErrosDeIO() { return repo.getErrosDeIO(); }
+        @Override public int getRegistrosNoJournal() { return repo.getRegistrosPendentes(); }
+        @Override public int getAlteracoesPendentes() { return repo.getAlteracoesPendentes(); }
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.seuapp.metricas;
+
+import java.util.Locale;
+
+/**
+ * Operações medidas (uma MBean de latência para cada uma).
+ */
+public enum Operacao {
+    // ProdutoService
+    CONSULTAR, LISTAR, CADASTRAR, EXCLUIR, IMPORTAR, PROXIMOS_A_VENCER, ESTOQUE_BAIXO, MARGEM, LISTAR_POR_SETOR, BUSCAR, EXPORTAR, ATUALIZAR, MOVIMENTAR,
+    // ProdutoRepository
+    CARREGAR, SALVAR, JOURNAL, CHECKPOINT;
+
+    /**
+     * Nome usado na MBean (ex.: "proximos_a_vencer").
+     */
+    public String nome() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,16 @@
+package br.com.seuapp.metricas;
+
+/**
+ * E/S do repositório: linhas lidas nas cargas e bytes gravados nas gravações.
+ */
+public interface RepositorioMXBean {
+    String getArquivo();
+    long getLinhasLidas();
+    long getLinhasUltimaCarga();
+    long getGravacoes();
+    long getBytesGravados();
+    long getBytesUltimaGravacao();
+    long getErrosDeIO();
+    int getRegistrosNoJournal();
+    int getAlteracoesPendentes();
+}
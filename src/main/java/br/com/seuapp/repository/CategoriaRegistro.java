@@ -0,0 +1,98 @@
+package br.com.seuapp.repository;
+
+import br.com.seuapp.model.Categoria;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de categorias canônicas: produtos com a mesma categoria (mesmo id e mesmos dados)
+ * passam a apontar para uma única instância, e os textos de categoria repetidos (nome, descrição,
+ * setor) para uma única String. As instâncias devolvidas são compartilhadas por todos os produtos e versões
+ * do catálogo, então são imutáveis: os setters lançam UnsupportedOperationException (para outra categoria,
+ * monte uma nova e peça a canônica dela).
+ * <p>
+ * Seguro para uso concorrente (a carga paralela usa o mesmo registro em várias threads).
+ */
+public class CategoriaRegistro {
+    // estimativa com compressed oops: Categoria = 12 (cabeçalho) + 4 (id) + 3 x 4 (refs) = 28 -> 32 bytes
+    private static final int BYTES_CATEGORIA = 32;
+
+    private record Chave(int id, String nome, String descricao, String setor) {}
+
+    // categoria canônica: a mesma instância está em vários produtos e versões publicadas
+    private static final class Canonica extends Categoria {
+        Canonica(int id, String nome, String descricao, String setor) {
+            super(id, nome, descricao, setor);
+        }
+
+        @Override public void setId(int id) { imutavel(); }
+        @Override public void setNome(String nome) { imutavel(); }
+        @Override public void setDescricao(String descricao) { imutavel(); }
+        @Override public void setSetor(String setor) { imutavel(); }
+
+        private static void imutavel() {
+            throw new UnsupportedOperationException("Categoria compartilhada não pode ser alterada; use uma nova Categoria.");
+        }
+    }
+
+    private final ConcurrentHashMap<Chave, Categoria> categorias = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> textos = new ConcurrentHashMap<>();
+    private final LongAdder reaproveitadas = new LongAdder();
+    private final LongAdder bytesEconomizados = new LongAdder();
+
+    /**
+     * Instância canônica (imutável) para os dados informados (cria e registra na primeira vez).
+     */
+    public Categoria canonica(int id, String nome, String descricao, String setor) {
+        var chave = new Chave(id, nome, descricao, setor);
+        var existente = categorias.get(chave);
+        if (existente != null) {
+            reaproveitadas.increment();
+            bytesEconomizados.add(BYTES_CATEGORIA + bytesDe(nome) + bytesDe(descricao) + bytesDe(setor));
+            return existente;
+        }
+        var nova = new Canonica(id, texto(nome), texto(descricao), texto(setor));
+        var corrida = categorias.putIfAbsent(chave, nova);
+        return corrida != null ? corrida : nova;
+    }
+
+    /**
+     * Versão para categorias já montadas (ex.: vindas do formulário); null continua null.
+     */
+    public Categoria canonica(Categoria c) {
+        if (c == null) return null;
+        return canonica(c.getId(), c.getNome(), c.getDescricao(), c.getSetor());
+    }
+
+    /**
+     * Devolve a String canônica com o mesmo conteúdo (pool próprio, não usa String.intern()).
+     */
+    public String texto(String s) {
+        if (s == null) return null;
+        var existente = textos.putIfAbsent(s, s);
+        if (existente == null) return s;
+        if (existente != s) bytesEconomizados.add(bytesDe(s));
+        return existente;
+    }
+
+    public Estatisticas estatisticas() {
+        return new Estatisticas(categorias.size(), textos.size(), reaproveitadas.sum(), bytesEconomizados.sum());
+    }
+
+    /**
+     * Tamanho aproximado de uma String: objeto (24) + byte[] (16 + conteúdo, alinhado em 8).
+     */
+    private static long bytesDe(String s) {
+        if (s == null) return 0;
+        return 24 + ((16L + s.length() + 7) & ~7L);
+    }
+
+    /**
+     * @param categorias         instâncias canônicas registradas
+     * @param textos             textos distintos no pool
+     * @param reaproveitadas     quantas vezes uma categoria existente foi reaproveitada
+     * @param bytesEconomizados  estimativa do heap que deixou de ficar retido (objetos e textos duplicados)
+     */
+    public record Estatisticas(int categorias, int textos, long reaproveitadas, long bytesEconomizados) {}
+}
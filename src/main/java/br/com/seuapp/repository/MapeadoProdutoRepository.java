@@ -0,0 +1,584 @@
+package br.com.seuapp.repository;
+
+import br.com.seuapp.metricas.Metricas;
+import br.com.seuapp.metricas.Operacao;
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.util.CSVUtils;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Catálogo num arquivo de registros de tamanho fixo mapeado em memória ({@code <arquivo>.registros}), um por
+ * produto, com os textos (código, nome, descrição e categoria) num arquivo à parte que só cresce
+ * ({@code <arquivo>.textos}).
+ * <ul>
+ *   <li>o registro de cada produto é achado pelo índice de códigos (código -> número do registro), montado na carga;</li>
+ *   <li>trocar o estoque ou os preços é uma escrita no buffer mapeado, no próprio registro ({@link #gravarEstoque},
+ *       {@link #gravarPrecos}); uma alteração completa regrava o registro e só acrescenta textos se eles mudaram;</li>
+ *   <li>a exclusão marca o registro como livre, e o próximo produto incluído ocupa esse registro;</li>
+ *   <li>o sistema operacional leva as páginas alteradas para o disco quando quiser; {@link #flush()},
+ *       {@link #checkpoint} e {@link #fechar()} forçam a gravação (e, com {@link #setSincronizarACada}, a cada N alterações).</li>
+ * </ul>
+ * Na primeira carga, se os arquivos ainda não existem, o CSV (com o journal) é lido e copiado para eles; depois
+ * o CSV não é mais lido nem gravado. Textos substituídos continuam no arquivo de textos até uma carga em que passem
+ * da metade dele: aí os dois arquivos são regravados só com o que está em uso. Journal, write-behind, snapshot
+ * binário e compressão não se aplicam.
+ * <p>
+ * Formato (versão 1, big-endian). Registros: cabeçalho de 64 bytes (int MAGIC "PRDM", short versão,
+ * short tamanho do registro, int registros usados, long geração) e registros de 64 bytes:
+ * <pre>
+ *  0 byte  estado (0 livre, 1 em uso)   1 byte escala da compra   2 byte escala da venda   3 byte tem categoria
+ *  4 int   quantidade em estoque        8 long ordem de inclusão (a listagem segue esta ordem)
+ * 16 long  preço de compra (unscaled)  24 long preço de venda (unscaled)
+ * 32 long  fabricação (epoch-day)      40 long validade (epoch-day)
+ * 48 int   id da categoria             52 int tamanho dos textos   56 long posição dos textos
+ * </pre>
+ * Textos: cabeçalho de 16 bytes (int MAGIC "PRDT", int 0, long a mesma geração dos registros) e, por produto,
+ * código, nome, descrição e nome, descrição e setor da categoria, cada um como int tamanho (-1 = null) + bytes UTF-8.
+ * Preço que não cabe num long (ou escala fora de um byte) vai como texto no arquivo de textos.
+ */
+public class MapeadoProdutoRepository extends ProdutoRepository {
+    private static final int MAGIC = 0x5052444D;        // "PRDM"
+    private static final int MAGIC_TEXTOS = 0x50524454; // "PRDT"
+    private static final short VERSAO = 1;
+    private static final int CABECALHO = 64;
+    private static final int CABECALHO_TEXTOS = 16;
+    private static final int TAMANHO = 64;
+    private static final int CAPACIDADE_INICIAL = 1024;
+    private static final long COMPACTAR_TEXTOS_A_PARTIR_DE = 1024 * 1024;
+
+    // cabeçalho
+    private static final int USADOS = 8, GERACAO = 16;
+    // campos do registro
+    private static final int ESTADO = 0, ESCALA_COMPRA = 1, ESCALA_VENDA = 2, TEM_CATEGORIA = 3, QUANTIDADE = 4,
+            ORDEM = 8, COMPRA = 16, VENDA = 24, FABRICACAO = 32, VALIDADE = 40, CATEGORIA = 48,
+            TAMANHO_TEXTOS = 52, POSICAO_TEXTOS = 56;
+    private static final byte LIVRE = 0, EM_USO = 1;
+    private static final byte SEM_PRECO = Byte.MIN_VALUE, PRECO_EM_TEXTO = Byte.MIN_VALUE + 1;
+    private static final long SEM_DATA = Long.MIN_VALUE;
+
+    private final Path arquivoRegistros;
+    private final Path arquivoTextos;
+    private FileChannel canalRegistros;
+    private FileChannel canalTextos;
+    private MappedByteBuffer registros;
+    private int capacidade;
+    private int usados;
+    private long fimTextos;
+    private long textosEmUso; // bytes de textos apontados por registros em uso
+    private long proximaOrdem;
+    private final Map<String, Integer> registroPorCodigo = new HashMap<>();
+    private final ArrayDeque<Integer> livres = new ArrayDeque<>();
+    private int sincronizarACada;
+    private int alteracoesSemSincronizar;
+
+    public MapeadoProdutoRepository(Path arquivo) {
+        super(arquivo);
+        var base = CSVUtils.semCompressao(arquivo);
+        this.arquivoRegistros = base.resolveSibling(base.getFileName() + ".registros");
+        this.arquivoTextos = base.resolveSibling(base.getFileName() + ".textos");
+    }
+
+    public Path getArquivoRegistros() { return arquivoRegistros; }
+    public Path getArquivoTextos() { return arquivoTextos; }
+    public synchronized int getRegistrosLivres() { return livres.size(); }
+    public int getSincronizarACada() { return sincronizarACada; }
+
+    /**
+     * Força a gravação em disco a cada {@code n} alterações; 0 = só em flush, checkpoint, importação e fechamento.
+     */
+    public void setSincronizarACada(int n) {
+        if (n < 0) throw new IllegalArgumentException("Intervalo de sincronização não pode ser negativo.");
+        this.sincronizarACada = n;
+    }
+
+    /**
+     * Lê os arquivos de registros (na primeira vez, o CSV). Se eles não puderem ser lidos a carga falha:
+     * o CSV está desatualizado desde a primeira carga, e começar com ele ou com um catálogo vazio perderia
+     * os produtos na próxima gravação.
+     */
+    @Override
+    public synchronized List<Produto> carregar() {
+        fecharArquivos();
+        try {
+            concluirReconstrucaoInterrompida();
+            if (!Files.exists(arquivoRegistros)) {
+                var produtos = super.carregar(); // primeira vez: CSV (e journal) da configuração anterior
+                reconstruir(produtos);
+                return produtos;
+            }
+            long inicio = System.nanoTime();
+            try {
+                var produtos = lerArquivos();
+                if (fimTextos > COMPACTAR_TEXTOS_A_PARTIR_DE && fimTextos - textosEmUso > textosEmUso) reconstruir(produtos);
+                return produtos;
+            } finally {
+                Metricas.registrar(Operacao.CARREGAR, inicio);
+            }
+        } catch (IOException | RuntimeException e) {
+            fecharArquivos();
+            var io = e instanceof IOException x ? x : new IOException(e);
+            falhaDeIO(Operacao.CARREGAR, io);
+            throw new UncheckedIOException("Não foi possível ler o catálogo mapeado em " + arquivoRegistros, io);
+        }
+    }
+
+    /**
+     * Grava o catálogo inteiro em arquivos novos (no lugar dos atuais), na ordem da coleção e sem registros livres.
+     */
+    @Override
+    public synchronized boolean salvar(Collection<Produto> produtos) {
+        long inicio = System.nanoTime();
+        try {
+            reconstruir(produtos);
+            return true;
+        } catch (IOException e) {
+            falhaDeIO(Operacao.SALVAR, e);
+            return false;
+        } finally {
+            Metricas.registrar(Operacao.SALVAR, inicio);
+        }
+    }
+
+    /**
+     * Regrava o registro do produto (ou ocupa um registro livre, se ele é novo). Como no cadastro, o produto
+     * alterado vai para o fim da ordem de listagem.
+     */
+    @Override
+    public synchronized void gravarAlteracao(Produto p, Collection<Produto> produtos) {
+        if (!aberto()) return;
+        try {
+            incluirOuAlterar(p);
+            gravou(TAMANHO);
+        } catch (IOException e) {
+            falhaDeIO(Operacao.SALVAR, e);
+        }
+    }
+
+    /**
+     * Só a quantidade, no lugar: 4 bytes no buffer mapeado (o produto mantém a posição na listagem).
+     */
+    @Override
+    public synchronized void gravarEstoque(Produto p, Collection<Produto> produtos) {
+        Integer r = registroPorCodigo.get(chave(p.getCodigo()));
+        if (r == null) {
+            gravarAlteracao(p, produtos);
+            return;
+        }
+        registros.putInt(posicao(r) + QUANTIDADE, p.getQuantidadeEstoque());
+        gravou(Integer.BYTES);
+    }
+
+    /**
+     * Uma escrita de 4 bytes por produto, no lugar (não regrava os registros como {@link #gravarImportacao}).
+     */
+    @Override
+    public synchronized void gravarEstoques(Collection<Produto> alterados, Collection<Produto> produtos) {
+        for (var p : alterados) gravarEstoque(p, produtos);
+    }
+
+    /**
+     * Só os preços, no lugar (o produto mantém a posição na listagem).
+     */
+    @Override
+    public synchronized void gravarPrecos(Produto p, Collection<Produto> produtos) {
+        Integer r = registroPorCodigo.get(chave(p.getCodigo()));
+        if (r == null) {
+            gravarAlteracao(p, produtos);
+            return;
+        }
+        try {
+            int pos = posicao(r);
+            escreverPreco(registros, pos, COMPRA, ESCALA_COMPRA, p.getPrecoCompra(), this::acrescentarTexto);
+            escreverPreco(registros, pos, VENDA, ESCALA_VENDA, p.getPrecoVenda(), this::acrescentarTexto);
+            gravou(2 * (Long.BYTES + 1));
+        } catch (IOException e) {
+            falhaDeIO(Operacao.SALVAR, e);
+        }
+    }
+
+    /**
+     * Marca o registro como livre; o próximo produto incluído o reaproveita.
+     */
+    @Override
+    public synchronized void gravarExclusao(String codigo, Collection<Produto> produtos) {
+        Integer r = registroPorCodigo.remove(chave(codigo));
+        if (r == null || !aberto()) return;
+        int pos = posicao(r);
+        textosEmUso -= registros.getInt(pos + TAMANHO_TEXTOS);
+        registros.put(pos + ESTADO, LIVRE);
+        livres.push(r);
+        gravou(1);
+    }
+
+    @Override
+    public synchronized void gravarImportacao(Collection<Produto> importados, Collection<Produto> produtos) {
+        if (!aberto()) return;
+        try {
+            for (var p : importados) incluirOuAlterar(p);
+            anotarGravacao((long) importados.size() * TAMANHO);
+        } catch (IOException e) {
+            falhaDeIO(Operacao.SALVAR, e);
+        }
+        flush();
+    }
+
+    @Override
+    public void checkpoint(Collection<Produto> produtos) {
+        flush();
+    }
+
+    /**
+     * Força a gravação em disco dos textos e, depois, dos registros que apontam para eles.
+     */
+    @Override
+    public synchronized void flush() {
+        if (!aberto()) return;
+        long inicio = System.nanoTime();
+        try {
+            canalTextos.force(false);
+            registros.force();
+            alteracoesSemSincronizar = 0;
+        } catch (IOException e) {
+            falhaDeIO(Operacao.CHECKPOINT, e);
+        } catch (UncheckedIOException e) {
+            falhaDeIO(Operacao.CHECKPOINT, e.getCause());
+        } finally {
+            Metricas.registrar(Operacao.CHECKPOINT, inicio);
+        }
+    }
+
+    @Override
+    public synchronized void fechar() {
+        flush();
+        fecharArquivos();
+    }
+
+    // ===== registros =====
+
+    private boolean aberto() {
+        if (registros != null) return true;
+        falhaDeIO(Operacao.SALVAR, new IOException("Arquivo de registros não está aberto: " + arquivoRegistros));
+        return false;
+    }
+
+    private void gravou(int bytes) {
+        anotarGravacao(bytes);
+        if (sincronizarACada > 0 && ++alteracoesSemSincronizar >= sincronizarACada) flush();
+    }
+
+    private void incluirOuAlterar(Produto p) throws IOException {
+        String k = chave(p.getCodigo());
+        Integer r = registroPorCodigo.get(k);
+        if (r == null) {
+            r = registroLivre();
+            registroPorCodigo.put(k, r);
+        }
+        int pos = posicao(r);
+        var textos = textosDe(p);
+        int tamanhoAntigo = registros.getInt(pos + TAMANHO_TEXTOS);
+        long posTextos = registros.getLong(pos + POSICAO_TEXTOS);
+        boolean emUso = registros.get(pos + ESTADO) == EM_USO;
+        // textos iguais aos gravados (a alteração mais comum) não crescem o arquivo de textos
+        if (!emUso || tamanhoAntigo != textos.length || !textosIguais(posTextos, textos)) {
+            posTextos = acrescentarTexto(textos);
+            if (emUso) textosEmUso -= tamanhoAntigo;
+            textosEmUso += textos.length;
+        }
+        escreverCampos(registros, pos, p, proximaOrdem++, posTextos, textos.length, this::acrescentarTexto);
+        registros.put(pos + ESTADO, EM_USO); // por último: um registro novo escrito pela metade continua livre
+    }
+
+    private int registroLivre() throws IOException {
+        Integer livre = livres.poll();
+        if (livre != null) return livre;
+        if (usados == capacidade) mapear(Math.max(CAPACIDADE_INICIAL, capacidade * 2));
+        registros.putInt(USADOS, usados + 1);
+        return usados++;
+    }
+
+    private static int posicao(int registro) {
+        return CABECALHO + registro * TAMANHO;
+    }
+
+    private void mapear(int novaCapacidade) throws IOException {
+        long bytes = CABECALHO + (long) novaCapacidade * TAMANHO;
+        if (bytes > Integer.MAX_VALUE) throw new IOException("Arquivo de registros passaria de 2 GB: " + arquivoRegistros);
+        registros = canalRegistros.map(FileChannel.MapMode.READ_WRITE, 0, bytes); // estende o arquivo se preciso
+        capacidade = novaCapacidade;
+    }
+
+    private void abrir() throws IOException {
+        canalRegistros = FileChannel.open(arquivoRegistros, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        canalTextos = FileChannel.open(arquivoTextos, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long tamanho = canalRegistros.size();
+        if (tamanho < CABECALHO) throw new IOException("Arquivo de registros inválido: " + arquivoRegistros);
+        mapear((int) Math.min(Integer.MAX_VALUE, (tamanho - CABECALHO) / TAMANHO));
+        if (registros.getInt(0) != MAGIC) throw new IOException("Arquivo de registros inválido: " + arquivoRegistros);
+        short versao = registros.getShort(4);
+        if (versao != VERSAO || registros.getShort(6) != TAMANHO)
+            throw new IOException("Versão de arquivo de registros não suportada: " + versao);
+        usados = registros.getInt(USADOS);
+        if (usados < 0 || usados > capacidade) throw new IOException("Arquivo de registros truncado: " + arquivoRegistros);
+
+        var cabecalho = ByteBuffer.allocate(CABECALHO_TEXTOS);
+        while (cabecalho.hasRemaining() && canalTextos.read(cabecalho, cabecalho.position()) > 0) { }
+        if (cabecalho.hasRemaining() || cabecalho.getInt(0) != MAGIC_TEXTOS)
+            throw new IOException("Arquivo de textos inválido: " + arquivoTextos);
+        // regravação interrompida entre um arquivo e outro
+        if (cabecalho.getLong(8) != registros.getLong(GERACAO))
+            throw new IOException("Arquivos de registros e de textos de gerações diferentes: " + arquivoRegistros);
+        fimTextos = canalTextos.size();
+    }
+
+    private void fecharArquivos() {
+        registros = null; // o mapeamento é liberado pelo coletor
+        for (var canal : new FileChannel[]{canalRegistros, canalTextos}) {
+            try {
+                if (canal != null) canal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        canalRegistros = canalTextos = null;
+        registroPorCodigo.clear();
+        livres.clear();
+        capacidade = usados = 0;
+        fimTextos = textosEmUso = proximaOrdem = 0;
+    }
+
+    private List<Produto> lerArquivos() throws IOException {
+        abrir();
+        if (fimTextos > Integer.MAX_VALUE) throw new IOException("Arquivo de textos maior que 2 GB: " + arquivoTextos);
+        var textos = canalTextos.map(FileChannel.MapMode.READ_ONLY, 0, fimTextos);
+        var lidos = new ArrayList<Map.Entry<Long, Produto>>(usados);
+        for (int r = usados - 1; r >= 0; r--) { // de trás para a frente: os primeiros livres são reaproveitados antes
+            int pos = posicao(r);
+            if (registros.get(pos + ESTADO) != EM_USO) {
+                livres.push(r);
+                continue;
+            }
+            var p = ler(pos, textos);
+            long ordem = registros.getLong(pos + ORDEM);
+            registroPorCodigo.put(chave(p.getCodigo()), r);
+            textosEmUso += registros.getInt(pos + TAMANHO_TEXTOS);
+            proximaOrdem = Math.max(proximaOrdem, ordem + 1);
+            lidos.add(Map.entry(ordem, p));
+        }
+        lidos.sort(Map.Entry.comparingByKey());
+        var produtos = new ArrayList<Produto>(lidos.size());
+        for (var e : lidos) produtos.add(e.getValue());
+        return produtos;
+    }
+
+    /**
+     * Regrava os dois arquivos (em temporários, levados ao disco e depois renomeados, os textos primeiro) e reabre.
+     * Uma queda entre as duas renomeações é terminada na próxima carga ({@link #concluirReconstrucaoInterrompida}).
+     */
+    private void reconstruir(Collection<Produto> produtos) throws IOException {
+        fecharArquivos();
+        long geracao = System.nanoTime();
+        var tmpRegistros = temporario(arquivoRegistros);
+        var tmpTextos = temporario(arquivoTextos);
+        Files.createDirectories(arquivoRegistros.toAbsolutePath().getParent());
+        long bytes;
+        try (var outRegistros = new BufferedOutputStream(Files.newOutputStream(tmpRegistros), 64 * 1024);
+             var outTextos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpTextos), 64 * 1024))) {
+            var cabecalho = ByteBuffer.allocate(CABECALHO);
+            cabecalho.putInt(0, MAGIC).putShort(4, VERSAO).putShort(6, (short) TAMANHO)
+                    .putInt(USADOS, produtos.size()).putLong(GERACAO, geracao);
+            outRegistros.write(cabecalho.array());
+            outTextos.writeInt(MAGIC_TEXTOS);
+            outTextos.writeInt(0);
+            outTextos.writeLong(geracao);
+
+            Textos acrescentar = b -> {
+                long pos = outTextos.size();
+                outTextos.write(b);
+                return pos;
+            };
+            var registro = ByteBuffer.allocate(TAMANHO);
+            long ordem = 0;
+            for (var p : produtos) {
+                var textos = textosDe(p);
+                Arrays.fill(registro.array(), (byte) 0);
+                escreverCampos(registro, 0, p, ordem++, acrescentar.acrescentar(textos), textos.length, acrescentar);
+                registro.put(ESTADO, EM_USO);
+                outRegistros.write(registro.array());
+            }
+            bytes = CABECALHO + (long) produtos.size() * TAMANHO + outTextos.size();
+        }
+        // renomear antes de o conteúdo estar no disco poderia deixar, depois de uma queda, arquivos com o nome certo e vazios
+        sincronizar(tmpTextos);
+        sincronizar(tmpRegistros);
+        Files.move(tmpTextos, arquivoTextos, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(tmpRegistros, arquivoRegistros, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        anotarGravacao(bytes);
+
+        abrir();
+        int r = 0;
+        for (var p : produtos) {
+            registroPorCodigo.put(chave(p.getCodigo()), r);
+            textosEmUso += registros.getInt(posicao(r) + TAMANHO_TEXTOS);
+            r++;
+        }
+        proximaOrdem = produtos.size();
+    }
+
+    /**
+     * Termina uma {@link #reconstruir} que caiu entre as duas renomeações: os textos novos já estão no lugar e os
+     * registros da mesma geração continuam no temporário (já gravados e sincronizados). Se a queda foi antes das
+     * renomeações, os arquivos atuais são os antigos, coerentes entre si, e os temporários são descartados.
+     */
+    private void concluirReconstrucaoInterrompida() throws IOException {
+        var tmpRegistros = temporario(arquivoRegistros);
+        long geracao = Files.exists(tmpRegistros) && Files.exists(arquivoTextos) ? geracao(tmpRegistros, MAGIC, GERACAO) : -1;
+        if (geracao != -1 && geracao == geracao(arquivoTextos, MAGIC_TEXTOS, 8)) {
+            Files.move(tmpRegistros, arquivoRegistros, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.err.println("Regravação interrompida de " + arquivoRegistros + " concluída.");
+        }
+        Files.deleteIfExists(tmpRegistros);
+        Files.deleteIfExists(temporario(arquivoTextos));
+    }
+
+    private static Path temporario(Path arquivo) {
+        return arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+    }
+
+    // geração gravada no cabeçalho, ou -1 se o arquivo for curto ou de outro tipo
+    private static long geracao(Path arquivo, int magic, int posicao) throws IOException {
+        try (var canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            var cabecalho = ByteBuffer.allocate(posicao + 8);
+            while (cabecalho.hasRemaining() && canal.read(cabecalho) > 0) { }
+            if (cabecalho.hasRemaining() || cabecalho.getInt(0) != magic) return -1;
+            return cabecalho.getLong(posicao);
+        }
+    }
+
+    private static void sincronizar(Path arquivo) throws IOException {
+        try (var canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+    }
+
+    // ===== campos =====
+
+    private interface Textos {
+        long acrescentar(byte[] bytes) throws IOException;
+    }
+
+    private long acrescentarTexto(byte[] bytes) throws IOException {
+        long pos = fimTextos;
+        var buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) canalTextos.write(buf, pos + buf.position());
+        fimTextos += bytes.length;
+        anotarGravacao(bytes.length);
+        return pos;
+    }
+
+    private boolean textosIguais(long pos, byte[] textos) throws IOException {
+        var atual = ByteBuffer.allocate(textos.length);
+        while (atual.hasRemaining() && canalTextos.read(atual, pos + atual.position()) > 0) { }
+        return Arrays.equals(atual.array(), textos);
+    }
+
+    // tudo menos o estado, que quem chama escreve por último
+    private static void escreverCampos(ByteBuffer b, int pos, Produto p, long ordem, long posTextos, int tamanhoTextos,
+                                       Textos textos) throws IOException {
+        var c = p.getCategoria();
+        b.putInt(pos + QUANTIDADE, p.getQuantidadeEstoque());
+        b.putLong(pos + ORDEM, ordem);
+        escreverPreco(b, pos, COMPRA, ESCALA_COMPRA, p.getPrecoCompra(), textos);
+        escreverPreco(b, pos, VENDA, ESCALA_VENDA, p.getPrecoVenda(), textos);
+        b.putLong(pos + FABRICACAO, p.getDataFabricacao() == null ? SEM_DATA : p.getDataFabricacao().toEpochDay());
+        b.putLong(pos + VALIDADE, p.getDataValidade() == null ? SEM_DATA : p.getDataValidade().toEpochDay());
+        b.put(pos + TEM_CATEGORIA, (byte) (c == null ? 0 : 1));
+        b.putInt(pos + CATEGORIA, c == null ? 0 : c.getId());
+        b.putInt(pos + TAMANHO_TEXTOS, tamanhoTextos);
+        b.putLong(pos + POSICAO_TEXTOS, posTextos);
+    }
+
+    private static void escreverPreco(ByteBuffer b, int pos, int campo, int campoEscala, BigDecimal v, Textos textos)
+            throws IOException {
+        if (v == null) {
+            b.put(pos + campoEscala, SEM_PRECO);
+        } else if (v.unscaledValue().bitLength() <= 63 && v.scale() > PRECO_EM_TEXTO && v.scale() <= Byte.MAX_VALUE) {
+            b.putLong(pos + campo, v.unscaledValue().longValue());
+            b.put(pos + campoEscala, (byte) v.scale());
+        } else {
+            var bytes = new ByteArrayOutputStream();
+            escreverTexto(new DataOutputStream(bytes), v.toString());
+            b.putLong(pos + campo, textos.acrescentar(bytes.toByteArray()));
+            b.put(pos + campoEscala, PRECO_EM_TEXTO);
+        }
+    }
+
+    private Produto ler(int pos, ByteBuffer textos) {
+        var t = textos.duplicate().position((int) registros.getLong(pos + POSICAO_TEXTOS));
+        var p = new Produto();
+        p.setCodigo(lerTexto(t));
+        p.setNome(lerTexto(t));
+        p.setDescricao(lerTexto(t));
+        String nomeCategoria = lerTexto(t), descricaoCategoria = lerTexto(t), setor = lerTexto(t);
+        p.setQuantidadeEstoque(registros.getInt(pos + QUANTIDADE));
+        p.setPrecoCompra(lerPreco(pos, COMPRA, ESCALA_COMPRA, textos));
+        p.setPrecoVenda(lerPreco(pos, VENDA, ESCALA_VENDA, textos));
+        p.setDataFabricacao(lerData(registros.getLong(pos + FABRICACAO)));
+        p.setDataValidade(lerData(registros.getLong(pos + VALIDADE)));
+        if (registros.get(pos + TEM_CATEGORIA) != 0) {
+            p.setCategoria(getCategorias().canonica(registros.getInt(pos + CATEGORIA), nomeCategoria, descricaoCategoria, setor));
+        }
+        return p;
+    }
+
+    private BigDecimal lerPreco(int pos, int campo, int campoEscala, ByteBuffer textos) {
+        byte escala = registros.get(pos + campoEscala);
+        if (escala == SEM_PRECO) return null;
+        long valor = registros.getLong(pos + campo);
+        if (escala == PRECO_EM_TEXTO) return new BigDecimal(lerTexto(textos.duplicate().position((int) valor)));
+        return BigDecimal.valueOf(valor, escala);
+    }
+
+    private static LocalDate lerData(long dia) {
+        return dia == SEM_DATA ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    private static byte[] textosDe(Produto p) throws IOException {
+        var bytes = new ByteArrayOutputStream(128);
+        var out = new DataOutputStream(bytes);
+        var c = p.getCategoria();
+        escreverTexto(out, p.getCodigo());
+        escreverTexto(out, p.getNome());
+        escreverTexto(out, p.getDescricao());
+        escreverTexto(out, c == null ? null : c.getNome());
+        escreverTexto(out, c == null ? null : c.getDescricao());
+        escreverTexto(out, c == null ? null : c.getSetor());
+        return bytes.toByteArray();
+    }
+
+    private static void escreverTexto(DataOutputStream out, String s) throws IOException {
+        if (s == null) { out.writeInt(-1); return; }
+        var b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String lerTexto(ByteBuffer b) {
+        int tam = b.getInt();
+        if (tam < 0) return null;
+        var bytes = new byte[tam];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
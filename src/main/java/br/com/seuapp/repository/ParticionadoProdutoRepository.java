@@ -0,0 +1,410 @@
+package br.com.seuapp.repository;
+
+import br.com.seuapp.model.Produto;
+import br.com.seuapp.util.CSVUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Catálogo particionado por setor: um CSV por {@code Categoria.setor} na pasta {@code <arquivo>.setores},
+ * mais um manifesto ({@code manifesto.csv}: setor;arquivo). Cada partição é um {@link ProdutoRepository}
+ * comum, com journal, snapshot binário e write-behind próprios (mesmas opções do repositório principal).
+ * <ul>
+ *   <li>uma alteração só regrava (ou só acrescenta ao journal de) a partição do setor do produto;</li>
+ *   <li>com uma seleção de setores, só essas partições são carregadas e gravadas; produtos de outros setores
+ *       são recusados ({@link #aceitaSetor});</li>
+ *   <li>se a pasta ainda não existe e há o CSV único, ele é lido e dividido na primeira carga (o CSV fica como está).</li>
+ * </ul>
+ * Setores são comparados sem diferenciar maiúsculas; produtos sem setor ficam na partição "sem-setor".
+ * A listagem segue a ordem das partições no manifesto (e, dentro de cada uma, a ordem do arquivo).
+ */
+public class ParticionadoProdutoRepository extends ProdutoRepository {
+    private static final String MANIFESTO_HEADER = "setor;arquivo";
+
+    private final Path pasta;
+    private final Path manifesto;
+    private final Set<String> selecao; // chaves de setor; null = todos
+    // chave do setor -> partição, na ordem do manifesto
+    private final Map<String, Particao> particoes = new LinkedHashMap<>();
+    // código -> chave do setor em que o produto foi gravado (para achar a partição antiga numa troca de setor)
+    private final Map<String, String> setorPorCodigo = new HashMap<>();
+    private volatile Supplier<? extends Collection<Produto>> fonte;
+
+    private record Particao(String setor, String arquivo, ProdutoRepository repo) {}
+
+    public ParticionadoProdutoRepository(Path arquivo) {
+        this(arquivo, null);
+    }
+
+    /**
+     * @param setores setores a carregar e gravar; null ou vazio = todos
+     */
+    public ParticionadoProdutoRepository(Path arquivo, Collection<String> setores) {
+        super(arquivo);
+        var base = CSVUtils.semCompressao(arquivo); // a pasta é a mesma com ou sem gzip
+        this.pasta = base.resolveSibling(base.getFileName() + ".setores");
+        this.manifesto = pasta.resolve("manifesto.csv");
+        if (setores == null || setores.isEmpty()) {
+            this.selecao = null;
+        } else {
+            var s = new HashSet<String>();
+            for (var setor : setores) s.add(chaveSetor(setor));
+            this.selecao = Collections.unmodifiableSet(s);
+        }
+    }
+
+    /**
+     * -Dprodutos.setores=Refrigerados,Bebidas (vazio = todos).
+     */
+    static List<String> setoresConfigurados() {
+        var valor = System.getProperty("produtos.setores", "");
+        var setores = new ArrayList<String>();
+        for (var s : valor.split(",")) if (!s.isBlank()) setores.add(s.trim());
+        return setores;
+    }
+
+    public Path getPasta() { return pasta; }
+
+    /**
+     * Setores (como aparecem no manifesto) das partições conhecidas, selecionadas ou não.
+     */
+    public synchronized List<String> getSetores() {
+        var setores = new ArrayList<String>();
+        for (var p : particoes.values()) setores.add(p.setor().isEmpty() ? "Sem Setor" : p.setor());
+        return setores;
+    }
+
+    @Override
+    public boolean aceitaSetor(String setor) {
+        return selecao == null || selecao.contains(chaveSetor(setor));
+    }
+
+    @Override
+    public void setFonte(Supplier<? extends Collection<Produto>> fonte) {
+        this.fonte = fonte;
+        synchronized (this) {
+            particoes.forEach((setor, p) -> p.repo().setFonte(fonteDoSetor(setor)));
+        }
+    }
+
+    @Override
+    public List<Produto> carregar() {
+        setorPorCodigo.clear();
+        if (!Files.exists(manifesto)) {
+            if (!Files.exists(origem())) return new ArrayList<>();
+            // primeira carga particionada: divide o CSV único (todos os setores; a seleção vale depois)
+            var todos = super.carregar();
+            salvarParticoes(todos, true);
+            if (selecao == null) return todos;
+            setorPorCodigo.clear();
+        }
+        try {
+            lerManifesto();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+        var produtos = new ArrayList<Produto>();
+        for (var e : particoesSelecionadas().entrySet()) {
+            for (var p : e.getValue().repo().carregar()) {
+                setorPorCodigo.put(chave(p.getCodigo()), e.getKey());
+                produtos.add(p);
+            }
+        }
+        return produtos;
+    }
+
+    /**
+     * Só a partição do setor, direto do disco: com uma seleção de setores, consultar outro setor não carrega o resto.
+     */
+    @Override
+    public List<Produto> lerSetor(String setor) {
+        return carregarSetores(List.of(setor == null ? "" : setor));
+    }
+
+    /**
+     * Lê só as partições dos setores pedidos, direto do disco (sem alterar o que está carregado).
+     * Serve para consultar um setor sem carregar o catálogo inteiro.
+     */
+    public List<Produto> carregarSetores(Collection<String> setores) {
+        try {
+            if (Files.exists(manifesto)) lerManifesto();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+        var produtos = new ArrayList<Produto>();
+        for (var setor : setores) {
+            Particao p;
+            synchronized (this) {
+                p = particoes.get(chaveSetor(setor));
+            }
+            if (p == null) continue;
+            var leitor = new ProdutoRepository(pasta.resolve(p.arquivo()), getCategorias());
+            leitor.setModoJournal(isModoJournal());
+            produtos.addAll(leitor.carregar());
+        }
+        return produtos;
+    }
+
+    @Override
+    public boolean salvar(Collection<Produto> produtos) {
+        return salvarParticoes(produtos, false);
+    }
+
+    @Override
+    public void gravarAlteracao(Produto p, Collection<Produto> produtos) {
+        String k = chave(p.getCodigo());
+        String setor = chaveSetor(setorDe(p));
+        String anterior;
+        synchronized (this) {
+            anterior = setorPorCodigo.put(k, setor);
+        }
+        if (anterior != null && !anterior.equals(setor)) {
+            particao(anterior, null).gravarExclusao(p.getCodigo(), doSetor(produtos, anterior));
+        }
+        particao(setor, setorDe(p)).gravarAlteracao(p, doSetor(produtos, setor));
+    }
+
+    /**
+     * Cada partição recebe os estoques dos seus produtos (consolidar o estoque não muda o setor de ninguém).
+     */
+    @Override
+    public void gravarEstoques(Collection<Produto> alterados, Collection<Produto> produtos) {
+        var porSetor = new LinkedHashMap<String, List<Produto>>();
+        var nomes = new HashMap<String, String>();
+        for (var p : alterados) {
+            String setor = chaveSetor(setorDe(p));
+            porSetor.computeIfAbsent(setor, s -> new ArrayList<>()).add(p);
+            nomes.putIfAbsent(setor, setorDe(p));
+        }
+        porSetor.forEach((setor, lista) -> particao(setor, nomes.get(setor)).gravarEstoques(lista, doSetor(produtos, setor)));
+    }
+
+    @Override
+    public void gravarExclusao(String codigo, Collection<Produto> produtos) {
+        String setor;
+        synchronized (this) {
+            setor = setorPorCodigo.remove(chave(codigo));
+        }
+        if (setor != null) particao(setor, null).gravarExclusao(codigo, doSetor(produtos, setor));
+    }
+
+    /**
+     * Regrava só as partições dos setores dos produtos importados (e das que eles deixaram).
+     */
+    @Override
+    public void gravarImportacao(Collection<Produto> importados, Collection<Produto> produtos) {
+        var alteradas = new LinkedHashMap<String, String>(); // chave -> nome do setor
+        synchronized (this) {
+            for (var p : importados) {
+                String setor = chaveSetor(setorDe(p));
+                String anterior = setorPorCodigo.put(chave(p.getCodigo()), setor);
+                alteradas.putIfAbsent(setor, setorDe(p));
+                if (anterior != null) alteradas.putIfAbsent(anterior, null);
+            }
+        }
+        alteradas.forEach((setor, nome) -> particao(setor, nome).checkpoint(doSetor(produtos, setor)));
+    }
+
+    @Override
+    public void checkpoint(Collection<Produto> produtos) {
+        for (var e : particoesSelecionadas().entrySet()) e.getValue().repo().checkpoint(doSetor(produtos, e.getKey()));
+    }
+
+    @Override
+    public void flush() {
+        for (var p : particoesSelecionadas().values()) p.repo().flush();
+    }
+
+    @Override
+    public void fechar() {
+        for (var p : particoesSelecionadas().values()) p.repo().fechar();
+    }
+
+    // ===== medições: soma das partições =====
+
+    @Override public long getBytesGravados() { return soma(ProdutoRepository::getBytesGravados) + super.getBytesGravados(); }
+    @Override public long getGravacoes() { return soma(ProdutoRepository::getGravacoes) + super.getGravacoes(); }
+    @Override public long getLinhasLidas() { return soma(ProdutoRepository::getLinhasLidas) + super.getLinhasLidas(); }
+    @Override public long getErrosDeIO() { return soma(ProdutoRepository::getErrosDeIO) + super.getErrosDeIO(); }
+    @Override public int getRegistrosPendentes() { return (int) soma(ProdutoRepository::getRegistrosPendentes); }
+    @Override public int getAlteracoesPendentes() { return (int) soma(ProdutoRepository::getAlteracoesPendentes); }
+    @Override public long getLinhasUltimaCarga() { return soma(ProdutoRepository::getLinhasUltimaCarga); }
+    @Override public long getBytesUltimaGravacao() { return soma(ProdutoRepository::getBytesUltimaGravacao); }
+
+    private long soma(ToLongFunction<ProdutoRepository> medida) {
+        long total = 0;
+        for (var p : particoesSelecionadas().values()) total += medida.applyAsLong(p.repo());
+        return total;
+    }
+
+    // ===== partições =====
+
+    /**
+     * Grava as partições selecionadas (ou todas) a partir do catálogo; as que ficaram vazias são apagadas.
+     * Devolve false se alguma partição não pôde ser gravada.
+     */
+    private boolean salvarParticoes(Collection<Produto> produtos, boolean todas) {
+        var porSetor = new LinkedHashMap<String, List<Produto>>();
+        var nomes = new HashMap<String, String>();
+        synchronized (this) {
+            for (var p : produtos) {
+                String setor = chaveSetor(setorDe(p));
+                if (!todas && selecao != null && !selecao.contains(setor)) continue;
+                porSetor.computeIfAbsent(setor, s -> new ArrayList<>()).add(p);
+                nomes.putIfAbsent(setor, setorDe(p));
+                setorPorCodigo.put(chave(p.getCodigo()), setor);
+            }
+        }
+        boolean gravou = true;
+        for (var e : porSetor.entrySet()) gravou &= particao(e.getKey(), nomes.get(e.getKey())).checkpointAgora(e.getValue());
+        for (var e : (todas ? Map.copyOf(particoes) : particoesSelecionadas()).entrySet()) {
+            if (!porSetor.containsKey(e.getKey())) removerParticao(e.getKey(), e.getValue());
+        }
+        return gravou;
+    }
+
+    private void removerParticao(String setor, Particao p) {
+        try {
+            p.repo().fechar();
+            Files.deleteIfExists(p.repo().getArquivo());
+            Files.deleteIfExists(CSVUtils.semCompressao(p.repo().getArquivo())); // sobra de antes do gzip
+            Files.deleteIfExists(p.repo().getJournal());
+            Files.deleteIfExists(p.repo().getBinario());
+            synchronized (this) {
+                particoes.remove(setor);
+                gravarManifesto();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized Map<String, Particao> particoesSelecionadas() {
+        var mapa = new LinkedHashMap<String, Particao>();
+        particoes.forEach((setor, p) -> { if (selecao == null || selecao.contains(setor)) mapa.put(setor, p); });
+        return mapa;
+    }
+
+    /**
+     * Partição do setor; uma nova é criada (e anotada no manifesto) na primeira vez.
+     */
+    private synchronized ProdutoRepository particao(String setor, String nome) {
+        var p = particoes.get(setor);
+        if (p != null) return p.repo();
+        String arquivo = nomeDeArquivoLivre(setor.isEmpty() ? "sem-setor" : setor);
+        p = new Particao(nome == null ? setor : nome.trim(), arquivo, novoRepositorio(arquivo));
+        p.repo().setFonte(fonteDoSetor(setor));
+        particoes.put(setor, p);
+        try {
+            Files.createDirectories(pasta);
+            gravarManifesto();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return p.repo();
+    }
+
+    private ProdutoRepository novoRepositorio(String arquivo) {
+        var repo = new ProdutoRepository(pasta.resolve(arquivo), getCategorias());
+        repo.setModoJournal(isModoJournal());
+        repo.setCheckpointACada(getCheckpointACada());
+        repo.setParalelismo(getParalelismo());
+        repo.setSnapshotBinario(isSnapshotBinario());
+        repo.setWriteBehind(isWriteBehind());
+        repo.setAtrasoMaximoMs(getAtrasoMaximoMs());
+        repo.setAlteracoesMaximas(getAlteracoesMaximas());
+        return repo;
+    }
+
+    private Supplier<Collection<Produto>> fonteDoSetor(String setor) {
+        return () -> {
+            var todos = fonte;
+            if (todos == null) throw new IllegalStateException("Partição sem fonte do catálogo (setFonte).");
+            return new ArrayList<>(doSetor(todos.get(), setor));
+        };
+    }
+
+    private synchronized void lerManifesto() throws IOException {
+        var lidas = new LinkedHashMap<String, Particao>();
+        var linhas = Files.readAllLines(manifesto);
+        boolean comprimir = CSVUtils.comprimirAoGravar(getArquivo());
+        boolean renomeadas = false;
+        for (int i = 1; i < linhas.size(); i++) { // ignora cabeçalho
+            var colunas = linhas.get(i).split(";", -1);
+            if (colunas.length < 2 || colunas[1].isBlank()) continue;
+            String setor = chaveSetor(colunas[0]);
+            String arquivo = colunas[1].trim();
+            // gzip ligado: a partição passa a ".gz" (até a próxima gravação ela é lida do CSV sem compressão)
+            if (comprimir && !arquivo.endsWith(".gz")) {
+                arquivo += ".gz";
+                renomeadas = true;
+            }
+            var atual = particoes.get(setor);
+            lidas.put(setor, atual != null ? atual : new Particao(colunas[0].trim(), arquivo, novoRepositorio(arquivo)));
+        }
+        particoes.clear();
+        particoes.putAll(lidas);
+        for (var e : particoes.entrySet()) e.getValue().repo().setFonte(fonteDoSetor(e.getKey()));
+        if (renomeadas) gravarManifesto();
+    }
+
+    // chamado com o monitor do repositório
+    private void gravarManifesto() throws IOException {
+        var linhas = new ArrayList<String>(particoes.size() + 1);
+        linhas.add(MANIFESTO_HEADER);
+        for (var p : particoes.values()) linhas.add(p.setor().replace(";", ",") + ";" + p.arquivo());
+        var tmp = manifesto.resolveSibling("manifesto.csv.tmp");
+        CSVUtils.writeAllLines(tmp, linhas);
+        Files.move(tmp, manifesto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // "Frios & Laticínios" -> "frios-laticinios.csv" (ou .csv.gz; com sufixo se o nome já estiver em uso)
+    private String nomeDeArquivoLivre(String setor) {
+        var base = Normalizer.normalize(setor.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("^-|-$", "");
+        if (base.isEmpty()) base = "setor";
+        var usados = new HashSet<String>();
+        for (var p : particoes.values()) usados.add(p.arquivo());
+        String extensao = CSVUtils.comprimirAoGravar(getArquivo()) ? ".csv.gz" : ".csv";
+        String nome = base + extensao;
+        for (int i = 2; usados.contains(nome) || nome.equals("manifesto.csv"); i++) nome = base + "-" + i + extensao;
+        return nome;
+    }
+
+    /**
+     * Produtos do setor, filtrados só quando a partição de fato precisa deles (gravação completa).
+     */
+    private static Collection<Produto> doSetor(Collection<Produto> produtos, String setor) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Produto> iterator() {
+                return produtos.stream().filter(p -> chaveSetor(setorDe(p)).equals(setor)).iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) produtos.stream().filter(p -> chaveSetor(setorDe(p)).equals(setor)).count();
+            }
+        };
+    }
+
+    private static String setorDe(Produto p) {
+        return p.getCategoria() == null ? null : p.getCategoria().getSetor();
+    }
+
+    private static String chaveSetor(String setor) {
+        return setor == null ? "" : setor.trim().replace(";", ",").toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,72 +1,876 @@
 package br.com.seuapp.repository;
 
-import br.com.seuapp.model.Categoria;
+import br.com.seuapp.metricas.Metricas;
+import br.com.seuapp.metricas.Operacao;
 import br.com.seuapp.model.Produto;
+import br.com.seuapp.util.CSVStreamReader;
 import br.com.seuapp.util.CSVUtils;
 
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.time.LocalDate;
+import java.nio.file.StandardOpenOption;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class ProdutoRepository {
+    private static final String HEADER = "codigo;nome;descricao;dataFabricacao;dataValidade;precoCompra;precoVenda;quantidadeEstoque;categoriaId;categoriaNome;categoriaDescricao;categoriaSetor";
+
+    // abaixo disso não compensa dividir a leitura entre threads
+    private static final long TRECHO_MINIMO = 1024 * 1024;
+
+    // Registros do journal: "U;<linha CSV do produto>;#" (inclusão/alteração) e "D;<codigo>;#" (exclusão).
+    // O "#" final marca o registro como inteiro: uma queda no meio da escrita deixa o último sem ele.
+    private static final String TIPO_UPSERT = "U";
+    private static final String TIPO_DELETE = "D";
+    private static final String FIM = "#";
+    private static final String UPSERT = TIPO_UPSERT + ";";
+    private static final String DELETE = TIPO_DELETE + ";";
+    private static final String FIM_REGISTRO = ";" + FIM;
+    private static final int CAMPOS_PRODUTO = 12;
+
     private final Path arquivo;
+    private final Path journal;
+    private final Path binario;
     private final DateTimeFormatter BR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private final CategoriaRegistro categorias;
+
+    private boolean modoJournal = false;
+    private int checkpointACada = 1000;
+    private volatile int registrosPendentes = 0; // alterado só com o monitor de escrita (ou na carga)
+    private int paralelismo = 1;
+    private boolean snapshotBinario = false;
+
+    // write-behind: alterações ficam pendentes (uma por código) e uma thread grava em lote
+    private boolean writeBehind = false;
+    private long atrasoMaximoMs = 500;
+    private int alteracoesMaximas = 1000;
+    private Supplier<? extends Collection<Produto>> fonte; // cópia consistente do catálogo, para gravações completas
+    private final Object escrita = new Object();           // uma gravação por vez
+    private LinkedHashMap<String, String> pendentes = new LinkedHashMap<>(); // código -> registro do journal
+    private int alteracoesPendentes;
+    private boolean checkpointPedido;
+    private ScheduledExecutorService escritor;
+    private ScheduledFuture<?> agendado;
+
+    // medições (expostas via JMX pelo Monitoramento): bytes gravados em disco (CSV, journal e binário) e linhas lidas
+    private final LongAdder bytesGravados = new LongAdder();
+    private final LongAdder gravacoes = new LongAdder();
+    private final LongAdder linhasLidas = new LongAdder();
+    private final LongAdder errosDeIO = new LongAdder();
+    private volatile long bytesUltimaGravacao;
+    private volatile long linhasUltimaCarga;
+    private static final int TAMANHO_SEPARADOR = System.lineSeparator().length();
 
     public ProdutoRepository(Path arquivo) {
+        this(arquivo, new CategoriaRegistro());
+    }
+
+    // as partições por setor compartilham as categorias canônicas
+    ProdutoRepository(Path arquivo, CategoriaRegistro categorias) {
         this.arquivo = arquivo;
+        this.categorias = categorias;
+        // journal e binário não mudam de nome com a compressão: ligar o gzip não perde registros pendentes
+        var base = CSVUtils.semCompressao(arquivo);
+        this.journal = base.resolveSibling(base.getFileName() + ".journal");
+        this.binario = base.resolveSibling(base.getFileName() + ".bin");
+    }
+
+    /**
+     * Cria o repositório lendo as opções das propriedades de sistema:
+     * -Dprodutos.journal=true, -Dprodutos.checkpoint=N (registros entre checkpoints)
+     * -Dprodutos.paralelismo=N (threads na carga; 1 = sequencial),
+     * -Dprodutos.binario=true (snapshot binário ao lado do CSV)
+     * e -Dprodutos.writeBehind=true, com -Dprodutos.writeBehind.atrasoMs=N e -Dprodutos.writeBehind.maxAlteracoes=N.
+     * Com -Dprodutos.particionado=true o catálogo fica em um arquivo por setor ({@link ParticionadoProdutoRepository}),
+     * e -Dprodutos.setores=A,B carrega só esses setores.
+     * Com -Dprodutos.comprimido=true o catálogo é gravado em gzip, em {@code <arquivo>.gz}
+     * (a carga lê o mais recente entre o CSV e o .gz, então a opção pode ser ligada e desligada).
+     * Com -Dprodutos.mapeado=true o catálogo fica num arquivo mapeado de registros fixos ({@link MapeadoProdutoRepository},
+     * com -Dprodutos.mapeado.sync=N); o CSV só é lido na primeira carga.
+     */
+    public static ProdutoRepository configurado(Path arquivo) {
+        if (Boolean.getBoolean("produtos.comprimido") && !CSVUtils.comprimirAoGravar(arquivo)) {
+            arquivo = arquivo.resolveSibling(arquivo.getFileName() + ".gz");
+        }
+        ProdutoRepository repo;
+        if (Boolean.getBoolean("produtos.mapeado")) {
+            var mapeado = new MapeadoProdutoRepository(arquivo);
+            mapeado.setSincronizarACada(Integer.getInteger("produtos.mapeado.sync", 0));
+            repo = mapeado;
+        } else if (Boolean.getBoolean("produtos.particionado")) {
+            repo = new ParticionadoProdutoRepository(arquivo, ParticionadoProdutoRepository.setoresConfigurados());
+        } else {
+            repo = new ProdutoRepository(arquivo);
+        }
+        repo.setModoJournal(Boolean.getBoolean("produtos.journal"));
+        repo.setCheckpointACada(Integer.getInteger("produtos.checkpoint", 1000));
+        repo.setParalelismo(Integer.getInteger("produtos.paralelismo", 1));
+        repo.setSnapshotBinario(Boolean.getBoolean("produtos.binario"));
+        repo.setWriteBehind(Boolean.getBoolean("produtos.writeBehind"));
+        repo.setAtrasoMaximoMs(Long.getLong("produtos.writeBehind.atrasoMs", 500));
+        repo.setAlteracoesMaximas(Integer.getInteger("produtos.writeBehind.maxAlteracoes", 1000));
+        return repo;
     }
 
+    // configuração
+    public boolean isModoJournal() { return modoJournal; }
+    public void setModoJournal(boolean modoJournal) { this.modoJournal = modoJournal; }
+    public int getCheckpointACada() { return checkpointACada; }
+    public void setCheckpointACada(int checkpointACada) {
+        if (checkpointACada < 1) throw new IllegalArgumentException("Intervalo de checkpoint deve ser positivo.");
+        this.checkpointACada = checkpointACada;
+    }
+    public int getParalelismo() { return paralelismo; }
+    public void setParalelismo(int paralelismo) {
+        if (paralelismo < 1) throw new IllegalArgumentException("Paralelismo deve ser positivo.");
+        this.paralelismo = paralelismo;
+    }
+    public boolean isSnapshotBinario() { return snapshotBinario; }
+    public void setSnapshotBinario(boolean snapshotBinario) { this.snapshotBinario = snapshotBinario; }
+    public boolean isWriteBehind() { return writeBehind; }
+    public void setWriteBehind(boolean writeBehind) { this.writeBehind = writeBehind; }
+    public long getAtrasoMaximoMs() { return atrasoMaximoMs; }
+    public void setAtrasoMaximoMs(long atrasoMaximoMs) {
+        if (atrasoMaximoMs < 0) throw new IllegalArgumentException("Atraso máximo não pode ser negativo.");
+        this.atrasoMaximoMs = atrasoMaximoMs;
+    }
+    public int getAlteracoesMaximas() { return alteracoesMaximas; }
+    public void setAlteracoesMaximas(int alteracoesMaximas) {
+        if (alteracoesMaximas < 1) throw new IllegalArgumentException("Máximo de alterações deve ser positivo.");
+        this.alteracoesMaximas = alteracoesMaximas;
+    }
+    /**
+     * Fornece uma cópia consistente do catálogo para as gravações completas feitas pela thread do write-behind.
+     */
+    public void setFonte(Supplier<? extends Collection<Produto>> fonte) { this.fonte = fonte; }
+    public Path getJournal() { return journal; }
+    public Path getArquivo() { return arquivo; }
+    public long getBytesGravados() { return bytesGravados.sum(); }
+    public long getBytesUltimaGravacao() { return bytesUltimaGravacao; }
+    public long getGravacoes() { return gravacoes.sum(); }
+    public long getLinhasLidas() { return linhasLidas.sum(); }
+    public long getLinhasUltimaCarga() { return linhasUltimaCarga; }
+    public long getErrosDeIO() { return errosDeIO.sum(); }
+    /** Registros no journal desde o último checkpoint. */
+    public int getRegistrosPendentes() { return registrosPendentes; }
+    /** Alterações aguardando a thread do write-behind. */
+    public synchronized int getAlteracoesPendentes() { return pendentes.size(); }
+    public Path getBinario() { return binario; }
+    public CategoriaRegistro getCategorias() { return categorias; }
+
     public List<Produto> carregar() {
+        long inicio = System.nanoTime();
+        registrosPendentes = 0;
+        try {
+            List<Produto> produtos = snapshotBinario ? carregarBinario() : null;
+            if (produtos == null) {
+                try {
+                    produtos = paralelismo > 1 ? carregarEmParalelo() : carregarSequencial();
+                } catch (IOException e) {
+                    falhaDeIO(Operacao.CARREGAR, e);
+                    return new ArrayList<>();
+                }
+                // CSV mais novo (ou sem binário): deixa o binário pronto para a próxima inicialização
+                if (snapshotBinario && Files.exists(origem())) gravarBinario(produtos);
+            }
+            long linhas = produtos.size();
+            // fora do modo journal ele só existe se houve estoques consolidados (gravarEstoques) depois da última gravação
+            try {
+                produtos = reaplicarJournal(produtos);
+            } catch (IOException e) {
+                // sem o journal o catálogo voltaria ao snapshot, e o próximo checkpoint apagaria as alterações
+                falhaDeIO(Operacao.CARREGAR, e);
+                throw new UncheckedIOException("Não foi possível reaplicar o journal " + journal, e);
+            }
+            linhas += registrosPendentes;
+            linhasLidas.add(linhas);
+            linhasUltimaCarga = linhas;
+            return produtos;
+        } finally {
+            Metricas.registrar(Operacao.CARREGAR, inicio);
+        }
+    }
+
+    /**
+     * Lê o snapshot binário se ele existir e não for mais antigo que o CSV; senão devolve null.
+     */
+    private List<Produto> carregarBinario() {
         try {
-            var linhas = CSVUtils.readAllLines(arquivo);
-            if (linhas.isEmpty()) return new ArrayList<>();
-            // ignora cabeçalho
-            return linhas.stream().skip(1).filter(l -> !l.isBlank())
-                    .map(this::fromCSV)
-                    .collect(Collectors.toCollection(ArrayList::new));
+            if (!Files.exists(binario)) return null;
+            var csv = origem();
+            if (Files.exists(csv)
+                    && Files.getLastModifiedTime(binario).compareTo(Files.getLastModifiedTime(csv)) < 0) return null;
+            return SnapshotBinario.ler(binario, categorias);
         } catch (IOException e) {
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
-    }
-
-    public void salvar(List<Produto> produtos) {
-        var header = "codigo;nome;descricao;dataFabricacao;dataValidade;precoCompra;precoVenda;quantidadeEstoque;categoriaId;categoriaNome;categoriaDescricao;categoriaSetor";
-        var linhas = new ArrayList<String>();
-        linhas.add(header);
-
-        for (var p : produtos) {
-            var c = p.getCategoria();
-            linhas.add(String.join(";",
-                    safe(p.getCodigo()),
-                    safe(p.getNome()),
-                    safe(p.getDescricao()),
-                    p.getDataFabricacao() != null ? p.getDataFabricacao().format(BR) : "",
-                    p.getDataValidade() != null ? p.getDataValidade().format(BR) : "",
-                    p.getPrecoCompra() != null ? p.getPrecoCompra().toString() : "",
-                    p.getPrecoVenda() != null ? p.getPrecoVenda().toString() : "",
-                    String.valueOf(p.getQuantidadeEstoque()),
-                    c != null ? String.valueOf(c.getId()) : "",
-                    c != null ? safe(c.getNome()) : "",
-                    c != null ? safe(c.getDescricao()) : "",
-                    c != null ? safe(c.getSetor()) : ""
-            ));
+            falhaDeIO(Operacao.CARREGAR, e); // snapshot ilegível: volta para o CSV
+            return null;
         }
+    }
+
+    /**
+     * Grava o snapshot binário e devolve quantos bytes foram gravados (0 se falhou). Quem conta a gravação
+     * em {@code bytesUltimaGravacao} é o {@link #salvar}; na carga o binário não é uma gravação do catálogo.
+     */
+    private long gravarBinario(Collection<Produto> produtos) {
+        try {
+            SnapshotBinario.gravar(binario, produtos);
+            long bytes = Files.size(binario);
+            bytesGravados.add(bytes);
+            return bytes;
+        } catch (IOException e) {
+            falhaDeIO(Operacao.SALVAR, e);
+            try {
+                Files.deleteIfExists(binario); // não deixa um binário desatualizado ser preferido ao CSV
+            } catch (IOException ignored) {
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Arquivo de onde a carga lê: o mais recente entre o arquivo e o seu par com/sem ".gz"
+     * (ao ligar ou desligar a compressão, a primeira carga lê o que foi gravado por último).
+     */
+    Path origem() {
+        var par = CSVUtils.comprimirAoGravar(arquivo)
+                ? CSVUtils.semCompressao(arquivo)
+                : arquivo.resolveSibling(arquivo.getFileName() + ".gz");
         try {
-            CSVUtils.writeAllLines(arquivo, linhas);
+            if (!Files.exists(par)) return arquivo;
+            if (!Files.exists(arquivo)) return par;
+            return Files.getLastModifiedTime(par).compareTo(Files.getLastModifiedTime(arquivo)) > 0 ? par : arquivo;
         } catch (IOException e) {
-            e.printStackTrace();
+            return arquivo;
+        }
+    }
+
+    private List<Produto> carregarSequencial() throws IOException {
+        var produtos = new ArrayList<Produto>();
+        try (var leitor = CSVStreamReader.abrir(origem())) {
+            if (leitor.proximaLinha()) { // ignora cabeçalho
+                while (leitor.proximaLinha()) {
+                    if (!leitor.linhaEmBranco()) produtos.add(fromCSV(leitor, 0));
+                }
+            }
         }
+        return produtos;
+    }
+
+    /**
+     * Divide o arquivo em trechos de bytes que começam em início de linha, lê cada trecho
+     * em uma thread do pool e junta os resultados na ordem do arquivo.
+     */
+    private List<Produto> carregarEmParalelo() throws IOException {
+        if (!Files.exists(arquivo) || !origem().equals(arquivo)) return carregarSequencial();
+        long tamanho = Files.size(arquivo);
+        // gzip não permite começar a leitura no meio do arquivo
+        if (tamanho < 2 * TRECHO_MINIMO || CSVUtils.gzip(arquivo)) return carregarSequencial();
+
+        var limites = new ArrayList<Long>();
+        try (var canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long inicioDados = inicioDaProximaLinha(canal, 0, tamanho); // pula o cabeçalho
+            int trechos = (int) Math.max(1, Math.min(paralelismo * 4L, (tamanho - inicioDados) / TRECHO_MINIMO));
+            long passo = (tamanho - inicioDados) / trechos;
+            limites.add(inicioDados);
+            for (int i = 1; i < trechos; i++) {
+                long limite = inicioDaProximaLinha(canal, Math.max(inicioDados + i * passo, limites.get(limites.size() - 1)), tamanho);
+                if (limite > limites.get(limites.size() - 1)) limites.add(limite);
+            }
+            limites.add(tamanho);
+        }
+
+        var tarefas = new ArrayList<Callable<List<Produto>>>();
+        for (int i = 0; i + 1 < limites.size(); i++) {
+            long inicio = limites.get(i), fim = limites.get(i + 1);
+            tarefas.add(() -> carregarTrecho(inicio, fim));
+        }
+
+        var pool = new ForkJoinPool(paralelismo);
+        try {
+            var produtos = new ArrayList<Produto>();
+            for (var f : pool.invokeAll(tarefas)) produtos.addAll(f.get());
+            return produtos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga interrompida.", e);
+        } catch (ExecutionException e) {
+            // repassa o mesmo erro que a leitura sequencial lançaria
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<Produto> carregarTrecho(long inicio, long fim) throws IOException {
+        var produtos = new ArrayList<Produto>();
+        try (var leitor = CSVStreamReader.abrir(arquivo, inicio, fim)) {
+            while (leitor.proximaLinha()) {
+                if (!leitor.linhaEmBranco()) produtos.add(fromCSV(leitor, 0));
+            }
+        }
+        return produtos;
+    }
+
+    /**
+     * Posição logo após a primeira quebra de linha (\n, \r ou \r\n) a partir de {@code pos}.
+     */
+    private static long inicioDaProximaLinha(FileChannel canal, long pos, long tamanho) throws IOException {
+        var buf = ByteBuffer.allocate(4096);
+        while (pos < tamanho) {
+            buf.clear();
+            int n = canal.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n') return pos + i + 1;
+                if (b == '\r') {
+                    if (i + 1 < n) return buf.get(i + 1) == '\n' ? pos + i + 2 : pos + i + 1;
+                    var um = ByteBuffer.allocate(1);
+                    return canal.read(um, pos + i + 1) == 1 && um.get(0) == '\n' ? pos + i + 2 : pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return tamanho;
+    }
+
+    /**
+     * Lê um CSV externo no mesmo layout do catálogo (com cabeçalho), entregando as linhas em lotes
+     * de até {@code tamanhoLote}, sem carregar o arquivo inteiro. Linhas que não puderem ser convertidas
+     * (data, número ou preço inválido) chegam com {@link LinhaCSV#erro()} preenchido, sem interromper a leitura.
+     */
+    public void lerEmLotes(Path origem, int tamanhoLote, Consumer<List<LinhaCSV>> consumidor) throws IOException {
+        if (!Files.exists(origem)) throw new NoSuchFileException(origem.toString());
+        try (var leitor = CSVStreamReader.abrir(origem)) {
+            if (!leitor.proximaLinha()) return; // ignora cabeçalho
+            long numero = 1;
+            var lote = new ArrayList<LinhaCSV>(tamanhoLote);
+            while (leitor.proximaLinha()) {
+                numero++;
+                if (leitor.linhaEmBranco()) continue;
+                try {
+                    lote.add(new LinhaCSV(numero, fromCSV(leitor, 0), null));
+                } catch (RuntimeException e) {
+                    lote.add(new LinhaCSV(numero, null, "Valor inválido: " + e.getMessage()));
+                }
+                if (lote.size() == tamanhoLote) {
+                    consumidor.accept(lote);
+                    lote = new ArrayList<>(tamanhoLote);
+                }
+            }
+            if (!lote.isEmpty()) consumidor.accept(lote);
+            linhasLidas.add(numero - 1);
+        }
+    }
+
+    /**
+     * Linha lida de um CSV externo: o produto convertido ou a mensagem de erro.
+     */
+    public record LinhaCSV(long numero, Produto produto, String erro) {}
+
+    /**
+     * Grava o catálogo inteiro. Devolve false se o CSV não pôde ser gravado (o erro já foi registrado):
+     * quem depende do snapshot, como o checkpoint, não pode descartar o journal.
+     */
+    public boolean salvar(Collection<Produto> produtos) {
+        long inicio = System.nanoTime();
+        try {
+            try {
+                escreverCSV(arquivo, produtos.iterator());
+            } catch (IOException e) {
+                falhaDeIO(Operacao.SALVAR, e);
+                return false;
+            }
+            long bytes = 0;
+            try {
+                bytes = Files.size(arquivo);
+                bytesGravados.add(bytes);
+                gravacoes.increment();
+            } catch (IOException e) {
+                falhaDeIO(Operacao.SALVAR, e); // o CSV foi gravado; só a medição falhou
+            }
+            if (snapshotBinario) bytes += gravarBinario(produtos);
+            bytesUltimaGravacao = bytes; // CSV e binário desta gravação
+            return true;
+        } finally {
+            Metricas.registrar(Operacao.SALVAR, inicio);
+        }
+    }
+
+    /**
+     * Grava os produtos em {@code destino} no formato do catálogo (com gzip se terminar em ".gz"), à medida que
+     * o fluxo é consumido. A gravação vai para um temporário que só toma o lugar do destino no fim: em caso de erro
+     * o temporário é apagado e um arquivo que já existia em {@code destino} fica como estava.
+     * Devolve a quantidade de produtos gravados.
+     */
+    public long exportar(Stream<Produto> produtos, Path destino) throws IOException {
+        return escreverCSV(destino, produtos.iterator());
+    }
+
+    // linha a linha (em blocos do buffer), sem montar o CSV em memória, num temporário que só no fim toma o lugar
+    // do destino: um erro ou uma queda no meio da gravação deixa o arquivo anterior inteiro
+    private long escreverCSV(Path destino, Iterator<Produto> produtos) throws IOException {
+        var tmp = CSVUtils.temporario(destino);
+        long linhas = 0;
+        try {
+            try (var out = CSVUtils.abrirEscrita(tmp)) {
+                out.write(HEADER);
+                out.newLine();
+                while (produtos.hasNext()) {
+                    out.write(toCSV(produtos.next()));
+                    out.newLine();
+                    linhas++;
+                }
+            }
+            CSVUtils.substituir(tmp, destino);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException suprimida) {
+                e.addSuppressed(suprimida);
+            }
+            throw e;
+        }
+        return linhas;
+    }
+
+    /**
+     * Persiste a inclusão/alteração de um produto. No modo journal só acrescenta um registro;
+     * caso contrário (ou ao atingir o intervalo de checkpoint) grava o catálogo inteiro.
+     * Com write-behind a gravação fica pendente e é feita em lote pela thread de escrita.
+     */
+    public void gravarAlteracao(Produto p, Collection<Produto> produtos) {
+        if (writeBehind) { adiar(chave(p.getCodigo()), registroUpsert(p)); return; }
+        if (!modoJournal) { salvarCompleto(produtos); return; }
+        registrar(registroUpsert(p), produtos);
+    }
+
+    /**
+     * Persiste a troca da quantidade em estoque de um produto que já estava gravado. Aqui é uma alteração
+     * como outra qualquer; o {@link MapeadoProdutoRepository} regrava só o campo, no lugar.
+     */
+    public void gravarEstoque(Produto p, Collection<Produto> produtos) {
+        gravarAlteracao(p, produtos);
+    }
+
+    /**
+     * Persiste de uma vez as quantidades em estoque de vários produtos já gravados (a consolidação das
+     * movimentações de estoque). Os registros vão para o journal numa escrita só, mesmo fora do modo journal:
+     * regravar o catálogo a cada consolidação seguraria as movimentações atrás do disco. Como no modo journal,
+     * ele é reaplicado na carga e compactado no CSV a cada {@code checkpointACada} registros (ou na próxima
+     * gravação completa). Com write-behind fica pendente, como as outras alterações.
+     */
+    public void gravarEstoques(Collection<Produto> alterados, Collection<Produto> produtos) {
+        if (writeBehind) {
+            for (var p : alterados) gravarEstoque(p, produtos);
+            return;
+        }
+        var registros = new ArrayList<String>(alterados.size());
+        for (var p : alterados) registros.add(registroUpsert(p));
+        registrar(registros, produtos);
+    }
+
+    /**
+     * Persiste a troca dos preços de um produto que já estava gravado (mesma regra de {@link #gravarEstoque}).
+     */
+    public void gravarPrecos(Produto p, Collection<Produto> produtos) {
+        gravarAlteracao(p, produtos);
+    }
+
+    /**
+     * Persiste a exclusão de um produto (mesma regra de {@link #gravarAlteracao}).
+     */
+    public void gravarExclusao(String codigo, Collection<Produto> produtos) {
+        if (writeBehind) { adiar(chave(codigo), registroDelete(codigo)); return; }
+        if (!modoJournal) { salvarCompleto(produtos); return; }
+        registrar(registroDelete(codigo), produtos);
+    }
+
+    /**
+     * Persiste uma importação (vários produtos incluídos/substituídos de uma vez): grava o catálogo inteiro.
+     */
+    public void gravarImportacao(Collection<Produto> importados, Collection<Produto> produtos) {
+        checkpoint(produtos);
     }
 
     /**
-     * Normaliza texto para não quebrar o CSV (usa ';' como separador).
+     * Produtos de um setor que não está carregado (veja {@link #aceitaSetor}), lidos direto do disco.
+     * Aqui todos os setores estão carregados: não há o que ler.
      */
-    private String safe(String s) {
+    public List<Produto> lerSetor(String setor) {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Se este repositório grava produtos do setor (só não grava quando carrega apenas alguns setores).
+     */
+    public boolean aceitaSetor(String setor) {
+        return true;
+    }
+
+    /**
+     * Compacta o journal: grava o snapshot CSV completo e esvazia o journal.
+     * Se o processo cair entre os dois passos, reaplicar o journal sobre o novo snapshot dá o mesmo resultado.
+     * Com write-behind o checkpoint é feito pela thread de escrita, o quanto antes.
+     */
+    public void checkpoint(Collection<Produto> produtos) {
+        if (writeBehind) {
+            synchronized (this) {
+                checkpointPedido = true;
+                agendar(0);
+            }
+            return;
+        }
+        checkpointAgora(produtos);
+    }
+
+    // usado também pelo ParticionadoProdutoRepository, que precisa gravar a partição antes de haver fonte.
+    // O journal só é esvaziado se o snapshot foi gravado: com o disco falhando ele é a única cópia das alterações.
+    boolean checkpointAgora(Collection<Produto> produtos) {
+        long inicio = System.nanoTime();
+        try {
+            synchronized (escrita) {
+                if (!salvar(produtos)) {
+                    Metricas.falha(Operacao.CHECKPOINT);
+                    return false;
+                }
+                try {
+                    CSVUtils.truncate(journal);
+                    registrosPendentes = 0;
+                } catch (IOException e) {
+                    falhaDeIO(Operacao.CHECKPOINT, e);
+                }
+                return true;
+            }
+        } finally {
+            Metricas.registrar(Operacao.CHECKPOINT, inicio);
+        }
+    }
+
+    private void registrar(String registro, Collection<Produto> produtos) {
+        registrar(List.of(registro), produtos);
+    }
+
+    // com o monitor de escrita, como o flush: um checkpoint de outra thread (consolidação de estoque) não esvazia
+    // o journal entre o append e a contagem
+    private void registrar(List<String> registros, Collection<Produto> produtos) {
+        synchronized (escrita) {
+            long inicio = System.nanoTime();
+            try {
+                CSVUtils.appendLines(journal, registros);
+                registrosPendentes += registros.size();
+                long bytes = 0;
+                for (var r : registros) bytes += bytesDaLinha(r);
+                anotarGravacao(bytes);
+            } catch (IOException e) {
+                // sem journal não há garantia: cai para a gravação completa
+                falhaDeIO(Operacao.JOURNAL, e);
+                checkpointAgora(produtos);
+                return;
+            } finally {
+                Metricas.registrar(Operacao.JOURNAL, inicio);
+            }
+            if (registrosPendentes >= checkpointACada) checkpointAgora(produtos);
+        }
+    }
+
+    // fora do modo journal, o journal só tem estoques consolidados: a gravação completa os incorpora e o esvazia
+    private void salvarCompleto(Collection<Produto> produtos) {
+        if (registrosPendentes > 0) checkpointAgora(produtos);
+        else salvar(produtos);
+    }
+
+    void anotarGravacao(long bytes) {
+        bytesGravados.add(bytes);
+        bytesUltimaGravacao = bytes;
+        gravacoes.increment();
+    }
+
+    void falhaDeIO(Operacao op, IOException e) {
+        e.printStackTrace();
+        errosDeIO.increment();
+        Metricas.falha(op);
+    }
+
+    // ===== write-behind =====
+
+    /**
+     * Guarda a alteração (a mais recente por código vence) e agenda a gravação: no máximo
+     * {@code atrasoMaximoMs} depois da primeira alteração pendente, ou já, ao somar {@code alteracoesMaximas}.
+     */
+    private synchronized void adiar(String chave, String registro) {
+        pendentes.remove(chave); // reposiciona no fim, como a reaplicação do journal espera
+        pendentes.put(chave, registro);
+        alteracoesPendentes++;
+        agendar(alteracoesPendentes >= alteracoesMaximas ? 0 : atrasoMaximoMs);
+    }
+
+    private synchronized void agendar(long atrasoMs) {
+        // já existe gravação marcada dentro do prazo
+        if (agendado != null && (atrasoMs > 0 || agendado.getDelay(TimeUnit.MILLISECONDS) <= 0)) return;
+        if (agendado != null) agendado.cancel(false);
+        if (escritor == null) {
+            escritor = Executors.newSingleThreadScheduledExecutor(r -> {
+                var t = new Thread(r, "produtos-write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        agendado = escritor.schedule(this::flushAgendado, atrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushAgendado() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // não derruba a thread de escrita; as próximas alterações tentam de novo
+        }
+    }
+
+    /**
+     * Grava agora tudo o que estiver pendente (no write-behind; sem ele não há nada pendente).
+     */
+    public void flush() {
+        synchronized (escrita) {
+            LinkedHashMap<String, String> lote;
+            boolean completo;
+            synchronized (this) {
+                lote = pendentes;
+                pendentes = new LinkedHashMap<>();
+                alteracoesPendentes = 0;
+                completo = checkpointPedido;
+                checkpointPedido = false;
+                if (agendado != null) { agendado.cancel(false); agendado = null; }
+            }
+            if (lote.isEmpty() && !completo) return;
+            if (fonte == null) throw new IllegalStateException("Write-behind sem fonte do catálogo (setFonte).");
+
+            if (completo || !modoJournal) {
+                checkpointFlush();
+                return;
+            }
+            long inicio = System.nanoTime();
+            try {
+                CSVUtils.appendLines(journal, lote.values());
+                registrosPendentes += lote.size();
+                long bytes = 0;
+                for (var r : lote.values()) bytes += bytesDaLinha(r);
+                anotarGravacao(bytes);
+            } catch (IOException e) {
+                falhaDeIO(Operacao.JOURNAL, e);
+                checkpointFlush();
+                return;
+            } finally {
+                Metricas.registrar(Operacao.JOURNAL, inicio);
+            }
+            if (registrosPendentes >= checkpointACada) checkpointFlush();
+        }
+    }
+
+    // se o snapshot não foi gravado, o próximo flush (próxima alteração ou fechar) tenta de novo
+    private void checkpointFlush() {
+        if (checkpointAgora(fonte.get())) return;
+        synchronized (this) {
+            checkpointPedido = true;
+        }
+    }
+
+    /**
+     * Grava o que estiver pendente e encerra a thread de escrita. Pode ser chamado mais de uma vez.
+     */
+    public void fechar() {
+        flush();
+        synchronized (this) {
+            if (escritor != null) {
+                escritor.shutdown();
+                escritor = null;
+            }
+        }
+    }
+
+    private String registroUpsert(Produto p) {
+        return UPSERT + toCSV(p) + FIM_REGISTRO;
+    }
+
+    private String registroDelete(String codigo) {
+        return DELETE + safe(codigo) + FIM_REGISTRO;
+    }
+
+    // registro do journal já lido; produto null numa exclusão. completo: terminou com o marcador de fim
+    private record RegistroJournal(String chave, Produto produto, boolean completo) {}
+
+    /**
+     * Aplica os registros do journal, na ordem, sobre o snapshot carregado.
+     * Uma alteração move o produto para o fim da lista, como faz o cadastro.
+     * <p>
+     * Só o último registro pode ter sido cortado por uma queda (o journal só cresce no fim): se ele não estiver
+     * inteiro é descartado, e o arquivo volta ao fim do registro anterior para as próximas gravações. Um registro
+     * sem o marcador no meio do arquivo só vem de journals gravados antes dele e vale se estiver bem formado;
+     * qualquer outro registro ilegível é um journal corrompido e a carga falha (IOException).
+     */
+    private List<Produto> reaplicarJournal(List<Produto> snapshot) throws IOException {
+        if (!Files.exists(journal)) return snapshot;
+        var porCodigo = new LinkedHashMap<String, Produto>();
+        for (var p : snapshot) porCodigo.put(chave(p.getCodigo()), p);
+
+        RegistroJournal anterior = null;
+        boolean lido = false; // há um registro (anterior) esperando para saber se é o último
+        int linha = 0, linhaAnterior = 0;
+        try (var leitor = CSVStreamReader.abrir(journal)) {
+            while (leitor.proximaLinha()) {
+                linha++;
+                if (leitor.linhaEmBranco()) continue;
+                if (lido) {
+                    if (anterior == null) throw new IOException("Registro ilegível no journal " + journal + ", linha " + linhaAnterior);
+                    aplicar(anterior, porCodigo);
+                }
+                anterior = lerRegistro(leitor);
+                lido = true;
+                linhaAnterior = linha;
+            }
+        }
+        if (!lido) return snapshot;
+        boolean quebraNoFim = terminaComQuebra();
+        if (anterior != null && (anterior.completo() || quebraNoFim)) {
+            aplicar(anterior, porCodigo);
+            // inteiro mas sem a quebra de linha: a próxima gravação não pode continuar na mesma linha
+            if (!quebraNoFim) Files.writeString(journal, System.lineSeparator(), StandardOpenOption.APPEND);
+        } else {
+            System.err.println("Journal " + journal + ": último registro incompleto (linha " + linhaAnterior + ") descartado.");
+            descartarFinalIncompleto();
+        }
+        return new ArrayList<>(porCodigo.values());
+    }
+
+    private void aplicar(RegistroJournal r, LinkedHashMap<String, Produto> porCodigo) {
+        porCodigo.remove(r.chave());
+        if (r.produto() != null) porCodigo.put(r.chave(), r.produto());
+        registrosPendentes++;
+    }
+
+    /**
+     * Lê o registro da linha atual; null se ele não estiver bem formado (campos faltando, data ou número cortado).
+     */
+    private RegistroJournal lerRegistro(CSVStreamReader l) {
+        int campos = l.campos();
+        boolean completo = l.igual(campos - 1, FIM);
+        try {
+            if (l.igual(0, TIPO_UPSERT)) {
+                if (campos == 1 + CAMPOS_PRODUTO + 1 && completo) return upsert(l, true);
+                if (campos == 1 + CAMPOS_PRODUTO) return upsert(l, false);
+            } else if (l.igual(0, TIPO_DELETE)) {
+                if (campos == 3 && completo) return new RegistroJournal(chave(l.texto(1)), null, true);
+                if (campos == 2) return new RegistroJournal(chave(l.texto(1)), null, false);
+            }
+        } catch (RuntimeException e) {
+            // DateTimeParseException, NumberFormatException: campo cortado
+        }
+        return null;
+    }
+
+    private RegistroJournal upsert(CSVStreamReader l, boolean completo) {
+        var p = fromCSV(l, 1);
+        return new RegistroJournal(chave(p.getCodigo()), p, completo);
+    }
+
+    private boolean terminaComQuebra() throws IOException {
+        try (var canal = FileChannel.open(journal, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho == 0) return true;
+            var ultimo = ByteBuffer.allocate(1);
+            canal.read(ultimo, tamanho - 1);
+            return ultimo.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Corta o journal logo depois da última quebra de linha (remove o registro incompleto do fim).
+     */
+    private void descartarFinalIncompleto() throws IOException {
+        try (var canal = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var bloco = ByteBuffer.allocate(4096);
+            long pos = canal.size();
+            while (pos > 0) {
+                int n = (int) Math.min(bloco.capacity(), pos);
+                pos -= n;
+                bloco.clear().limit(n);
+                while (bloco.hasRemaining()) {
+                    if (canal.read(bloco, pos + bloco.position()) < 0) throw new IOException("Fim inesperado do journal " + journal);
+                }
+                for (int i = n - 1; i >= 0; i--) {
+                    if (bloco.get(i) == '\n') {
+                        canal.truncate(pos + i + 1);
+                        return;
+                    }
+                }
+            }
+            canal.truncate(0);
+        }
+    }
+
+    /**
+     * Chave de um código no catálogo (índices, journal, registros): sem espaços nas pontas e em maiúsculas.
+     */
+    public static String chave(String codigo) {
+        return codigo == null ? "" : codigo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private String toCSV(Produto p) {
+        var c = p.getCategoria();
+        return String.join(";",
+                safe(p.getCodigo()),
+                safe(p.getNome()),
+                safe(p.getDescricao()),
+                p.getDataFabricacao() != null ? p.getDataFabricacao().format(BR) : "",
+                p.getDataValidade() != null ? p.getDataValidade().format(BR) : "",
+                p.getPrecoCompra() != null ? p.getPrecoCompra().toString() : "",
+                p.getPrecoVenda() != null ? p.getPrecoVenda().toString() : "",
+                String.valueOf(p.getQuantidadeEstoque()),
+                c != null ? String.valueOf(c.getId()) : "",
+                c != null ? safe(c.getNome()) : "",
+                c != null ? safe(c.getDescricao()) : "",
+                c != null ? safe(c.getSetor()) : ""
+        );
+    }
+
+    /**
+     * Tamanho da linha em UTF-8, com o separador (sem montar o byte[]).
+     */
+    private static int bytesDaLinha(String s) {
+        int bytes = TAMANHO_SEPARADOR;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) bytes++;
+            else if (c < 0x800) bytes += 2;
+            else if (Character.isHighSurrogate(c)) { bytes += 4; i++; }
+            else bytes += 3;
+        }
+        return bytes;
+    }
+
+    /**
+     * Normaliza texto para não quebrar o CSV (usa ';' como separador). O snapshot binário grava os textos
+     * com a mesma normalização, para a carga dar o mesmo catálogo lendo um ou outro.
+     */
+    static String safe(String s) {
         if (s == null) return "";
         String t = s.trim();
         t = t.replace("\r", " ").replace("\n", " ").replace("\t", " "); // remove quebras
@@ -76,58 +880,33 @@ public class ProdutoRepository {
         return t;
     }
 
-
-    private Produto fromCSV(String line) {
-        var parts = line.split(";", -1); // mantém campos vazios
+    /**
+     * Monta o produto a partir da linha atual do leitor; {@code base} é a coluna do código
+     * (0 no CSV, 1 nos registros do journal).
+     */
+    private Produto fromCSV(CSVStreamReader l, int base) {
         var p = new Produto();
 
-        // Helpers de leitura (sempre trim)
-        String codigo = trimOrEmpty(parts, 0);
-        String nome = trimOrEmpty(parts, 1);
-        String descricao = trimOrEmpty(parts, 2);
-        String dtFabStr = trimOrEmpty(parts, 3);
-        String dtValStr = trimOrEmpty(parts, 4);
-        String precoCompraStr = trimOrEmpty(parts, 5);
-        String precoVendaStr = trimOrEmpty(parts, 6);
-        String qtdeStr = trimOrEmpty(parts, 7);
-        String catIdStr = trimOrEmpty(parts, 8);
-        String catNome = trimOrEmpty(parts, 9);
-        String catDesc = trimOrEmpty(parts, 10);
-        String catSetor = trimOrEmpty(parts, 11);
-
-        // Produto
-        p.setCodigo(codigo);
-        p.setNome(nome);
-        p.setDescricao(descricao);
-        p.setDataFabricacao(dtFabStr.isBlank() ? null : LocalDate.parse(dtFabStr, BR));
-        p.setDataValidade(dtValStr.isBlank() ? null : LocalDate.parse(dtValStr, BR));
-        p.setPrecoCompra(precoCompraStr.isBlank() ? null : new BigDecimal(precoCompraStr));
-        p.setPrecoVenda(precoVendaStr.isBlank() ? null : new BigDecimal(precoVendaStr));
-        p.setQuantidadeEstoque(qtdeStr.isBlank() ? 0 : Integer.parseInt(qtdeStr));
+        // Produto (campos já vêm com trim)
+        p.setCodigo(l.texto(base));
+        p.setNome(l.texto(base + 1));
+        p.setDescricao(l.texto(base + 2));
+        p.setDataFabricacao(l.data(base + 3));
+        p.setDataValidade(l.data(base + 4));
+        p.setPrecoCompra(l.decimal(base + 5));
+        p.setPrecoVenda(l.decimal(base + 6));
+        p.setQuantidadeEstoque(l.inteiro(base + 7, 0));
 
         // Categoria (só cria se houver algo)
-        if (!catIdStr.isBlank() || !catNome.isBlank() || !catDesc.isBlank() || !catSetor.isBlank()) {
-            var c = new Categoria(
-                    catIdStr.isBlank() ? 0 : Integer.parseInt(catIdStr),
-                    catNome,
-                    catDesc,
-                    catSetor
+        if (!l.vazio(base + 8) || !l.vazio(base + 9) || !l.vazio(base + 10) || !l.vazio(base + 11)) {
+            var c = categorias.canonica(
+                    l.inteiro(base + 8, 0),
+                    l.texto(base + 9),
+                    l.texto(base + 10),
+                    l.texto(base + 11)
             );
             p.setCategoria(c);
         }
         return p;
     }
-
-    /**
-     * Lê o índice do vetor aplicando trim; se faltar coluna, retorna ""
-     */
-    private String trimOrEmpty(String[] arr, int idx) {
-        if (arr == null || idx < 0 || idx >= arr.length) return "";
-        var s = arr[idx];
-        return (s == null) ? "" : s.trim();
-    }
 }
-
-
-
-
@@ -0,0 +1,132 @@
+package br.com.seuapp.repository;
+
+import br.com.seuapp.metricas.Metricas;
+import br.com.seuapp.metricas.Operacao;
+import br.com.seuapp.util.CSVStreamReader;
+import br.com.seuapp.util.CSVUtils;
+import br.com.seuapp.util.Executores;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registro de auditoria das movimentações de estoque, em {@code <catálogo>.movimentos}: uma linha
+ * "dataHora;codigo;tipo;quantidade;saldo" por movimentação, sempre acrescentada, nunca regravada.
+ * <p>
+ * Quem movimenta só põe a linha numa fila; uma thread grava a fila em lote até {@code atrasoMs} depois,
+ * então os caixas não esperam pelo disco (nem uns pelos outros). Se o processo cair, perdem-se no máximo
+ * as linhas desse intervalo; {@link #flush()} e {@link #fechar()} gravam o que estiver na fila.
+ */
+public class RegistroDeMovimentos {
+    private static final String HEADER = "dataHora;codigo;tipo;quantidade;saldo";
+
+    private final Path arquivo;
+    private final long atrasoMs;
+    private final Queue<String> fila = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean agendado = new AtomicBoolean();
+    private final Object escrita = new Object(); // uma gravação por vez
+    private List<String> naoGravadas = new ArrayList<>(); // linhas de uma gravação que falhou, tentadas de novo
+    private ScheduledExecutorService escritor;
+
+    /**
+     * Uma linha do registro.
+     */
+    public record Lancamento(LocalDateTime dataHora, String codigo, String tipo, int quantidade, int saldo) {}
+
+    public RegistroDeMovimentos(Path arquivoDoCatalogo, long atrasoMs) {
+        if (atrasoMs < 0) throw new IllegalArgumentException("Atraso não pode ser negativo.");
+        var base = CSVUtils.semCompressao(arquivoDoCatalogo.toAbsolutePath());
+        this.arquivo = base.resolveSibling(base.getFileName() + ".movimentos");
+        this.atrasoMs = atrasoMs;
+    }
+
+    public Path getArquivo() { return arquivo; }
+
+    /**
+     * Enfileira a movimentação; {@code saldo} é o estoque do produto logo depois dela.
+     */
+    public void registrar(String codigo, String tipo, int quantidade, int saldo) {
+        fila.add(LocalDateTime.now() + ";" + codigo + ";" + tipo + ";" + quantidade + ";" + saldo);
+        if (agendado.compareAndSet(false, true)) agendar();
+    }
+
+    private synchronized void agendar() {
+        if (escritor == null) escritor = Executores.agendador("produtos-movimentos");
+        escritor.schedule(this::flushAgendado, atrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushAgendado() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // não derruba a thread de escrita; a próxima movimentação agenda de novo
+        }
+    }
+
+    /**
+     * Grava agora as linhas na fila.
+     */
+    public void flush() {
+        synchronized (escrita) {
+            agendado.set(false); // o que entrar na fila a partir daqui agenda outra gravação
+            var linhas = naoGravadas;
+            naoGravadas = new ArrayList<>();
+            String linha;
+            while ((linha = fila.poll()) != null) linhas.add(linha);
+            if (linhas.isEmpty()) return;
+            try {
+                if (!Files.exists(arquivo)) CSVUtils.appendLine(arquivo, HEADER);
+                CSVUtils.appendLines(arquivo, linhas);
+            } catch (IOException e) {
+                e.printStackTrace();
+                Metricas.falha(Operacao.MOVIMENTAR);
+                naoGravadas = linhas;
+            }
+        }
+    }
+
+    /**
+     * Grava a fila e encerra a thread de escrita (uma movimentação depois disso cria outra).
+     */
+    public void fechar() {
+        flush();
+        synchronized (this) {
+            if (escritor != null) {
+                escritor.shutdown();
+                escritor = null;
+            }
+        }
+    }
+
+    /**
+     * Movimentações do produto (código normalizado, como gravado), da mais antiga para a mais recente,
+     * incluindo as que ainda estavam na fila.
+     */
+    public List<Lancamento> doProduto(String codigo) throws IOException {
+        flush();
+        var lista = new ArrayList<Lancamento>();
+        if (!Files.exists(arquivo)) return lista;
+        try (var leitor = CSVStreamReader.abrir(arquivo)) {
+            while (leitor.proximaLinha()) {
+                if (leitor.campos() < 5 || !leitor.igual(1, codigo)) continue;
+                try {
+                    lista.add(new Lancamento(LocalDateTime.parse(leitor.texto(0)), leitor.texto(1), leitor.texto(2),
+                            leitor.inteiro(3, 0), leitor.inteiro(4, 0)));
+                } catch (DateTimeParseException e) {
+                    // linha truncada por queda
+                }
+            }
+        }
+        return lista;
+    }
+}
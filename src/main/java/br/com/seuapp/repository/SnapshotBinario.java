@@ -0,0 +1,195 @@
+package br.com.seuapp.repository;
+
+import br.com.seuapp.model.Categoria;
+import br.com.seuapp.model.Produto;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Snapshot binário do catálogo, gravado ao lado do CSV para acelerar a carga.
+ * <p>
+ * Formato (versão 1, big-endian):
+ * <pre>
+ * int    MAGIC ("PRDB")
+ * short  versão
+ * int    qtd. categorias; para cada: int id, str nome, str descricao, str setor
+ * int    qtd. produtos;   para cada: str codigo, str nome, str descricao,
+ *                                    long fabricacao (epoch-day), long validade,
+ *                                    preco compra, preco venda, int quantidade, int categoria (-1 = nenhuma)
+ * str    = int tamanho em bytes (-1 = null) + bytes UTF-8
+ * data   = Long.MIN_VALUE quando null
+ * preco  = byte tipo (0 null, 1 long, 2 BigInteger) + int escala + (long | int tamanho + bytes)
+ * </pre>
+ * Os textos são gravados como no CSV (normalizados por {@link ProdutoRepository#safe}, null vira ""): a carga
+ * dá o mesmo catálogo, venha do binário ou do CSV.
+ */
+class SnapshotBinario {
+    private static final int MAGIC = 0x50524442; // "PRDB"
+    private static final short VERSAO = 1;
+    private static final long SEM_DATA = Long.MIN_VALUE;
+    // menor registro possível (todos os textos e preços null), para conferir as quantidades com o arquivo
+    private static final int MINIMO_CATEGORIA = 4 + 3 * 4;
+    private static final int MINIMO_PRODUTO = 3 * 4 + 2 * 8 + 2 + 2 * 4;
+
+    private SnapshotBinario() {}
+
+    /**
+     * Grava num arquivo temporário e só então substitui o snapshot, para nunca deixar um arquivo pela metade.
+     */
+    static void gravar(Path arquivo, Collection<Produto> produtos) throws IOException {
+        var tmp = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSAO);
+
+            var indices = new IdentityHashMap<Categoria, Integer>();
+            var categorias = new ArrayList<Categoria>();
+            for (var p : produtos) {
+                var c = p.getCategoria();
+                if (c != null && !indices.containsKey(c)) {
+                    indices.put(c, categorias.size());
+                    categorias.add(c);
+                }
+            }
+            out.writeInt(categorias.size());
+            for (var c : categorias) {
+                out.writeInt(c.getId());
+                escreverTexto(out, ProdutoRepository.safe(c.getNome()));
+                escreverTexto(out, ProdutoRepository.safe(c.getDescricao()));
+                escreverTexto(out, ProdutoRepository.safe(c.getSetor()));
+            }
+
+            out.writeInt(produtos.size());
+            for (var p : produtos) {
+                escreverTexto(out, ProdutoRepository.safe(p.getCodigo()));
+                escreverTexto(out, ProdutoRepository.safe(p.getNome()));
+                escreverTexto(out, ProdutoRepository.safe(p.getDescricao()));
+                out.writeLong(p.getDataFabricacao() == null ? SEM_DATA : p.getDataFabricacao().toEpochDay());
+                out.writeLong(p.getDataValidade() == null ? SEM_DATA : p.getDataValidade().toEpochDay());
+                escreverPreco(out, p.getPrecoCompra());
+                escreverPreco(out, p.getPrecoVenda());
+                out.writeInt(p.getQuantidadeEstoque());
+                out.writeInt(p.getCategoria() == null ? -1 : indices.get(p.getCategoria()));
+            }
+        }
+        Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Um arquivo danificado (quantidades, tamanhos ou índices fora do que o arquivo comporta) dá IOException,
+     * como um arquivo cortado: quem carrega volta para o CSV.
+     */
+    static List<Produto> ler(Path arquivo, CategoriaRegistro registro) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo), 64 * 1024))) {
+            if (in.readInt() != MAGIC) throw new IOException("Snapshot binário inválido: " + arquivo);
+            short versao = in.readShort();
+            if (versao != VERSAO) throw new IOException("Versão de snapshot não suportada: " + versao);
+
+            var categorias = new Categoria[quantidade(in, MINIMO_CATEGORIA)];
+            for (int i = 0; i < categorias.length; i++) {
+                categorias[i] = registro.canonica(in.readInt(), lerTexto(in), lerTexto(in), lerTexto(in));
+            }
+
+            int total = quantidade(in, MINIMO_PRODUTO);
+            var produtos = new ArrayList<Produto>(total);
+            for (int i = 0; i < total; i++) {
+                var p = new Produto();
+                p.setCodigo(lerTexto(in));
+                p.setNome(lerTexto(in));
+                p.setDescricao(lerTexto(in));
+                p.setDataFabricacao(lerData(in));
+                p.setDataValidade(lerData(in));
+                p.setPrecoCompra(lerPreco(in));
+                p.setPrecoVenda(lerPreco(in));
+                p.setQuantidadeEstoque(in.readInt());
+                int c = in.readInt();
+                if (c >= categorias.length || c < -1) throw new IOException("Categoria inválida no snapshot binário: " + c);
+                p.setCategoria(c < 0 ? null : categorias[c]);
+                produtos.add(p);
+            }
+            return produtos;
+        }
+    }
+
+    private static void escreverTexto(DataOutputStream out, String s) throws IOException {
+        if (s == null) { out.writeInt(-1); return; }
+        var b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    // quantidade de registros, conferida com o que ainda resta do arquivo
+    private static int quantidade(DataInputStream in, int minimoPorItem) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || (long) n * minimoPorItem > restante(in))
+            throw new IOException("Quantidade inválida no snapshot binário: " + n);
+        return n;
+    }
+
+    // bytes do arquivo ainda não lidos: para um arquivo, available() é exatamente isso
+    private static long restante(DataInputStream in) throws IOException {
+        return in.available();
+    }
+
+    private static byte[] lerBytes(DataInputStream in, int tam) throws IOException {
+        if (tam > restante(in)) throw new IOException("Tamanho inválido no snapshot binário: " + tam);
+        var b = new byte[tam];
+        in.readFully(b);
+        return b;
+    }
+
+    private static String lerTexto(DataInputStream in) throws IOException {
+        int tam = in.readInt();
+        if (tam == -1) return null;
+        if (tam < 0) throw new IOException("Tamanho inválido no snapshot binário: " + tam);
+        var b = lerBytes(in, tam);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDate lerData(DataInputStream in) throws IOException {
+        long dia = in.readLong();
+        if (dia == SEM_DATA) return null;
+        try {
+            return LocalDate.ofEpochDay(dia);
+        } catch (DateTimeException e) {
+            throw new IOException("Data inválida no snapshot binário: " + dia, e);
+        }
+    }
+
+    private static void escreverPreco(DataOutputStream out, BigDecimal v) throws IOException {
+        if (v == null) { out.writeByte(0); return; }
+        var unscaled = v.unscaledValue();
+        if (unscaled.bitLength() <= 63) {
+            out.writeByte(1);
+            out.writeInt(v.scale());
+            out.writeLong(unscaled.longValue());
+        } else {
+            var b = unscaled.toByteArray();
+            out.writeByte(2);
+            out.writeInt(v.scale());
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private static BigDecimal lerPreco(DataInputStream in) throws IOException {
+        byte tipo = in.readByte();
+        if (tipo == 0) return null;
+        if (tipo != 1 && tipo != 2) throw new IOException("Preço inválido no snapshot binário: tipo " + tipo);
+        int escala = in.readInt();
+        if (tipo == 1) return BigDecimal.valueOf(in.readLong(), escala);
+        int tam = in.readInt();
+        if (tam <= 0) throw new IOException("Tamanho inválido no snapshot binário: " + tam);
+        var b = lerBytes(in, tam);
+        return new BigDecimal(new BigInteger(b), escala);
+    }
+}
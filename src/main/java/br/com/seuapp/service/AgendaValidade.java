@@ -0,0 +1,115 @@
+package br.com.seuapp.service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Produtos separados por dia de validade, numa roda de dias que anda uma casa por dia (timing wheel).
+ * <ul>
+ *   <li>janela: uma casa para cada dia de hoje até hoje + {@code janela}, em vetor circular;</li>
+ *   <li>depois: validades além da janela, por dia (entram na roda quando o dia chega ao fim da janela);</li>
+ *   <li>vencidos: validade antes de hoje.</li>
+ * </ul>
+ * "Já vencidos" sai pronto, sem percorrer o catálogo (o "vencem nos próximos N dias" é uma faixa do índice de
+ * validade da versão publicada). Ao virar o dia, a casa de ontem vai para os vencidos e a do novo fim da janela
+ * é preenchida; cada mudança vira um aviso.
+ * <p>
+ * Guarda só as chaves (código normalizado). Não é thread-safe: usada pelo {@link ProdutoService} sob o lock.
+ */
+class AgendaValidade {
+    private final int janela;
+    private final List<LinkedHashSet<String>> roda;
+    private final TreeMap<Long, LinkedHashSet<String>> depois = new TreeMap<>();
+    private final LinkedHashSet<String> vencidos = new LinkedHashSet<>();
+    private final Map<String, Long> diaPorChave = new HashMap<>();
+    private long hoje;
+
+    AgendaValidade(LocalDate hoje, int janela) {
+        if (janela < 0) throw new IllegalArgumentException("Janela de validade não pode ser negativa.");
+        this.janela = janela;
+        this.hoje = hoje.toEpochDay();
+        this.roda = new ArrayList<>(janela + 1);
+        for (int i = 0; i <= janela; i++) roda.add(new LinkedHashSet<>());
+    }
+
+    LocalDate hoje() { return LocalDate.ofEpochDay(hoje); }
+
+    int janela() { return janela; }
+
+    /**
+     * Inclui (ou move) o produto; sem validade ele só sai da agenda.
+     * Devolve o aviso que a inclusão gera (perto de vencer ou vencido), ou null se a validade estiver além da janela.
+     */
+    AvisoValidade.Tipo incluir(String chave, LocalDate validade) {
+        remover(chave);
+        if (validade == null) return null;
+        long dia = validade.toEpochDay();
+        diaPorChave.put(chave, dia);
+        if (dia < hoje) {
+            vencidos.add(chave);
+            return AvisoValidade.Tipo.VENCIDO;
+        }
+        if (dia > hoje + janela) {
+            depois.computeIfAbsent(dia, d -> new LinkedHashSet<>()).add(chave);
+            return null;
+        }
+        casa(dia).add(chave);
+        return AvisoValidade.Tipo.PERTO_DE_VENCER;
+    }
+
+    void remover(String chave) {
+        Long dia = diaPorChave.remove(chave);
+        if (dia == null) return;
+        if (dia < hoje) {
+            vencidos.remove(chave);
+        } else if (dia > hoje + janela) {
+            var mesmoDia = depois.get(dia);
+            mesmoDia.remove(chave);
+            if (mesmoDia.isEmpty()) depois.remove(dia);
+        } else {
+            casa(dia).remove(chave);
+        }
+    }
+
+    /**
+     * Avança a roda até {@code novoHoje}, chamando {@code aviso} para cada produto que venceu
+     * ou entrou na janela. Datas anteriores a hoje são ignoradas.
+     */
+    void avancar(LocalDate novoHoje, Aviso aviso) {
+        long alvo = novoHoje.toEpochDay();
+        while (hoje < alvo) {
+            var ontem = casa(hoje);
+            for (var chave : ontem) aviso.avisar(AvisoValidade.Tipo.VENCIDO, chave, hoje);
+            vencidos.addAll(ontem);
+            ontem.clear();
+            hoje++;
+            // a casa que ficou livre passa a ser o último dia da janela
+            long fim = hoje + janela;
+            var chegando = depois.remove(fim);
+            if (chegando != null) {
+                casa(fim).addAll(chegando);
+                for (var chave : chegando) aviso.avisar(AvisoValidade.Tipo.PERTO_DE_VENCER, chave, fim);
+            }
+        }
+    }
+
+    List<String> vencidos() {
+        return new ArrayList<>(vencidos);
+    }
+
+    int quantidadeNaJanela() {
+        int n = 0;
+        for (var casa : roda) n += casa.size();
+        return n;
+    }
+
+    int quantidadeVencidos() { return vencidos.size(); }
+
+    private LinkedHashSet<String> casa(long dia) {
+        return roda.get((int) Math.floorMod(dia, (long) roda.size()));
+    }
+
+    interface Aviso {
+        void avisar(AvisoValidade.Tipo tipo, String chave, long diaValidade);
+    }
+}
@@ -0,0 +1,313 @@
+package br.com.seuapp.service;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Mapa ordenado imutável (árvore balanceada por peso): {@link #com} e {@link #sem} devolvem uma árvore nova
+ * que compartilha com a anterior tudo fora do caminho alterado (O(log n) nós novos). Uma versão já publicada
+ * nunca muda, então pode ser lida por várias threads sem lock enquanto outras versões são criadas.
+ * <p>
+ * Cada nó guarda o tamanho da sua subárvore, o que permite ir direto a uma posição ({@link #aPartirDaPosicao}).
+ */
+final class ArvorePersistente<K, V> {
+    // parâmetros clássicos de balanceamento por peso (Adams; os mesmos do Data.Map do Haskell)
+    private static final int DELTA = 3, RAZAO = 2;
+    private static final ArvorePersistente<?, ?> VAZIA_NATURAL = new ArvorePersistente<>(null, null);
+
+    private final Comparator<? super K> ordem;
+    private final No<K, V> raiz;
+
+    private ArvorePersistente(Comparator<? super K> ordem, No<K, V> raiz) {
+        this.ordem = ordem;
+        this.raiz = raiz;
+    }
+
+    /**
+     * Árvore vazia na ordem natural das chaves.
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> ArvorePersistente<K, V> vazia() {
+        return (ArvorePersistente<K, V>) VAZIA_NATURAL;
+    }
+
+    static <K, V> ArvorePersistente<K, V> vazia(Comparator<? super K> ordem) {
+        return new ArvorePersistente<>(Objects.requireNonNull(ordem), null);
+    }
+
+    int tamanho() { return tamanho(raiz); }
+
+    boolean estaVazia() { return raiz == null; }
+
+    V buscar(K chave) {
+        var no = raiz;
+        while (no != null) {
+            int c = comparar(chave, no.chave);
+            if (c == 0) return no.valor;
+            no = c < 0 ? no.esq : no.dir;
+        }
+        return null;
+    }
+
+    /**
+     * Árvore com a chave associada ao valor (substitui o valor se a chave já existir).
+     */
+    ArvorePersistente<K, V> com(K chave, V valor) {
+        return new ArvorePersistente<>(ordem, incluir(raiz, chave, valor));
+    }
+
+    /**
+     * Árvore sem a chave (a própria árvore se ela não existir).
+     */
+    ArvorePersistente<K, V> sem(K chave) {
+        var nova = remover(raiz, chave);
+        return nova == raiz ? this : new ArvorePersistente<>(ordem, nova);
+    }
+
+    /**
+     * Árvore com os pares já ordenados por chave (sem repetição), montada em O(n) sem rebalancear;
+     * para a carga inicial. Só vale sobre uma árvore vazia.
+     */
+    ArvorePersistente<K, V> comOrdenados(List<K> chaves, List<V> valores) {
+        if (raiz != null) throw new IllegalStateException("Carga ordenada só em árvore vazia.");
+        if (chaves.size() != valores.size()) throw new IllegalArgumentException("Chaves e valores com tamanhos diferentes.");
+        for (int i = 1; i < chaves.size(); i++)
+            if (comparar(chaves.get(i - 1), chaves.get(i)) >= 0) throw new IllegalArgumentException("Chaves fora de ordem ou repetidas.");
+        return new ArvorePersistente<>(ordem, montar(chaves, valores, 0, chaves.size()));
+    }
+
+    // metade de cada lado: os tamanhos das subárvores diferem no máximo em um, sempre dentro do DELTA
+    private static <K, V> No<K, V> montar(List<K> chaves, List<V> valores, int de, int ate) {
+        if (de >= ate) return null;
+        int meio = (de + ate) >>> 1;
+        return new No<>(chaves.get(meio), valores.get(meio), montar(chaves, valores, de, meio), montar(chaves, valores, meio + 1, ate));
+    }
+
+    K primeiraChave() {
+        if (raiz == null) throw new NoSuchElementException();
+        var no = raiz;
+        while (no.esq != null) no = no.esq;
+        return no.chave;
+    }
+
+    K ultimaChave() {
+        if (raiz == null) throw new NoSuchElementException();
+        var no = raiz;
+        while (no.dir != null) no = no.dir;
+        return no.chave;
+    }
+
+    void forEach(BiConsumer<? super K, ? super V> acao) {
+        var it = new Percurso<>(raiz);
+        while (it.hasNext()) {
+            var no = it.next();
+            acao.accept(no.chave, no.valor);
+        }
+    }
+
+    /**
+     * Valores em ordem de chave.
+     */
+    Stream<V> valores() {
+        var it = new Percurso<>(raiz);
+        return fluxo(Spliterators.spliterator(valoresDe(it), tamanho(), Spliterator.ORDERED | Spliterator.SIZED));
+    }
+
+    /**
+     * Valores a partir da posição {@code posicao} (0 = menor chave), sem percorrer os anteriores.
+     */
+    Stream<V> aPartirDaPosicao(int posicao) {
+        int resto = Math.max(0, tamanho() - Math.max(0, posicao));
+        var it = Percurso.naPosicao(raiz, posicao);
+        return fluxo(Spliterators.spliterator(valoresDe(it), resto, Spliterator.ORDERED | Spliterator.SIZED));
+    }
+
+    /**
+     * Pares das chaves maiores ou iguais a {@code inicio}, em ordem (o chamador decide onde parar).
+     */
+    Stream<Map.Entry<K, V>> entradasAPartirDe(K inicio) {
+        Iterator<? extends Map.Entry<K, V>> it = Percurso.aPartirDe(raiz, inicio, this::comparar);
+        return fluxo(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED));
+    }
+
+    private static <T> Stream<T> fluxo(Spliterator<T> s) {
+        return StreamSupport.stream(s, false);
+    }
+
+    private static <K, V> Iterator<V> valoresDe(Percurso<K, V> it) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() { return it.hasNext(); }
+
+            @Override
+            public V next() { return it.next().valor; }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private int comparar(K a, K b) {
+        return ordem != null ? ordem.compare(a, b) : ((Comparable<? super K>) a).compareTo(b);
+    }
+
+    // ===== nós =====
+
+    // o próprio nó serve de par chave/valor nos percursos (sem alocar entradas)
+    private static final class No<K, V> implements Map.Entry<K, V> {
+        final K chave;
+        final V valor;
+        final No<K, V> esq, dir;
+        final int tamanho;
+
+        No(K chave, V valor, No<K, V> esq, No<K, V> dir) {
+            this.chave = chave;
+            this.valor = valor;
+            this.esq = esq;
+            this.dir = dir;
+            this.tamanho = tamanho(esq) + tamanho(dir) + 1;
+        }
+
+        @Override
+        public K getKey() { return chave; }
+
+        @Override
+        public V getValue() { return valor; }
+
+        @Override
+        public V setValue(V valor) { throw new UnsupportedOperationException(); }
+    }
+
+    private static int tamanho(No<?, ?> no) {
+        return no == null ? 0 : no.tamanho;
+    }
+
+    private No<K, V> incluir(No<K, V> no, K chave, V valor) {
+        if (no == null) return new No<>(chave, valor, null, null);
+        int c = comparar(chave, no.chave);
+        if (c < 0) return balancear(no.chave, no.valor, incluir(no.esq, chave, valor), no.dir);
+        if (c > 0) return balancear(no.chave, no.valor, no.esq, incluir(no.dir, chave, valor));
+        return new No<>(chave, valor, no.esq, no.dir);
+    }
+
+    private No<K, V> remover(No<K, V> no, K chave) {
+        if (no == null) return null;
+        int c = comparar(chave, no.chave);
+        if (c < 0) {
+            var esq = remover(no.esq, chave);
+            return esq == no.esq ? no : balancear(no.chave, no.valor, esq, no.dir);
+        }
+        if (c > 0) {
+            var dir = remover(no.dir, chave);
+            return dir == no.dir ? no : balancear(no.chave, no.valor, no.esq, dir);
+        }
+        return juntar(no.esq, no.dir);
+    }
+
+    // junta duas subárvores (todas as chaves de esq < as de dir) tirando o extremo da maior
+    private static <K, V> No<K, V> juntar(No<K, V> esq, No<K, V> dir) {
+        if (esq == null) return dir;
+        if (dir == null) return esq;
+        if (esq.tamanho > dir.tamanho) {
+            var max = esq;
+            while (max.dir != null) max = max.dir;
+            return balancear(max.chave, max.valor, semMaximo(esq), dir);
+        }
+        var min = dir;
+        while (min.esq != null) min = min.esq;
+        return balancear(min.chave, min.valor, esq, semMinimo(dir));
+    }
+
+    private static <K, V> No<K, V> semMinimo(No<K, V> no) {
+        if (no.esq == null) return no.dir;
+        return balancear(no.chave, no.valor, semMinimo(no.esq), no.dir);
+    }
+
+    private static <K, V> No<K, V> semMaximo(No<K, V> no) {
+        if (no.dir == null) return no.esq;
+        return balancear(no.chave, no.valor, no.esq, semMaximo(no.dir));
+    }
+
+    // uma inclusão/remoção desequilibra no máximo por um elemento: uma rotação simples ou dupla basta
+    private static <K, V> No<K, V> balancear(K chave, V valor, No<K, V> esq, No<K, V> dir) {
+        int te = tamanho(esq), td = tamanho(dir);
+        if (te + td > 1) {
+            if (td > DELTA * te) {
+                return tamanho(dir.esq) < RAZAO * tamanho(dir.dir)
+                        ? new No<>(dir.chave, dir.valor, new No<>(chave, valor, esq, dir.esq), dir.dir)
+                        : new No<>(dir.esq.chave, dir.esq.valor,
+                                new No<>(chave, valor, esq, dir.esq.esq),
+                                new No<>(dir.chave, dir.valor, dir.esq.dir, dir.dir));
+            }
+            if (te > DELTA * td) {
+                return tamanho(esq.dir) < RAZAO * tamanho(esq.esq)
+                        ? new No<>(esq.chave, esq.valor, esq.esq, new No<>(chave, valor, esq.dir, dir))
+                        : new No<>(esq.dir.chave, esq.dir.valor,
+                                new No<>(esq.chave, esq.valor, esq.esq, esq.dir.esq),
+                                new No<>(chave, valor, esq.dir.dir, dir));
+            }
+        }
+        return new No<>(chave, valor, esq, dir);
+    }
+
+    /**
+     * Percurso em ordem com pilha explícita (a árvore não muda, então não há o que invalidar).
+     */
+    private static final class Percurso<K, V> implements Iterator<No<K, V>> {
+        private final ArrayDeque<No<K, V>> pilha = new ArrayDeque<>();
+
+        Percurso(No<K, V> raiz) {
+            descerEsquerda(raiz);
+        }
+
+        private Percurso() {}
+
+        static <K, V> Percurso<K, V> naPosicao(No<K, V> raiz, int posicao) {
+            var p = new Percurso<K, V>();
+            var no = raiz;
+            while (no != null) {
+                int te = tamanho(no.esq);
+                if (posicao < te) {
+                    p.pilha.push(no);
+                    no = no.esq;
+                } else if (posicao == te) {
+                    p.pilha.push(no);
+                    break;
+                } else {
+                    posicao -= te + 1;
+                    no = no.dir;
+                }
+            }
+            return p;
+        }
+
+        static <K, V> Percurso<K, V> aPartirDe(No<K, V> raiz, K inicio, Comparator<K> ordem) {
+            var p = new Percurso<K, V>();
+            var no = raiz;
+            while (no != null) {
+                if (ordem.compare(inicio, no.chave) <= 0) {
+                    p.pilha.push(no);
+                    no = no.esq;
+                } else {
+                    no = no.dir;
+                }
+            }
+            return p;
+        }
+
+        private void descerEsquerda(No<K, V> no) {
+            for (; no != null; no = no.esq) pilha.push(no);
+        }
+
+        @Override
+        public boolean hasNext() { return !pilha.isEmpty(); }
+
+        @Override
+        public No<K, V> next() {
+            if (pilha.isEmpty()) throw new NoSuchElementException();
+            var no = pilha.pop();
+            descerEsquerda(no.dir);
+            return no;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package br.com.seuapp.service;
+
+import br.com.seuapp.model.Produto;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Mudança na situação de validade de um produto, entregue aos ouvintes de
+ * {@link ProdutoService#aoAvisarValidade(java.util.function.Consumer)}.
+ */
+public record AvisoValidade(Tipo tipo, Produto produto, LocalDate hoje) {
+    public enum Tipo {
+        /** Entrou na janela de alerta (vence de hoje até hoje + janela). */
+        PERTO_DE_VENCER,
+        /** Passou da data de validade. */
+        VENCIDO
+    }
+
+    /**
+     * Dias até a validade (negativo depois de vencido).
+     */
+    public long diasParaVencer() {
+        return ChronoUnit.DAYS.between(hoje, produto.getDataValidade());
+    }
+}
@@ -0,0 +1,570 @@
+package br.com.seuapp.service;
+
+import br.com.seuapp.model.Categoria;
+import br.com.seuapp.model.Produto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento colunar: cada campo do produto fica num vetor primitivo próprio (preços como
+ * unscaled long + escala, datas como epoch-day int, quantidade int, categoria como índice num
+ * dicionário) e os textos (código, nome, descrição) num único byte[] em UTF-8.
+ * Objetos {@link Produto} só são montados quando alguém lê (buscar, listar, relatórios).
+ * <p>
+ * Os slots são usados em ordem de inclusão; uma exclusão só marca o slot como morto e,
+ * quando há mais mortos que vivos, os vetores são compactados mantendo a ordem. Assim a varredura
+ * 0..n dos vetores já sai na ordem de listagem e os relatórios percorrem memória contígua.
+ * <p>
+ * Snapshots: um slot já preenchido nunca é reescrito, a exclusão só carimba a versão em que o slot morreu, e
+ * crescer ou compactar cria vetores novos. Um {@link #snapshot()} guarda as referências dos vetores, o número
+ * de slots e a versão; ele enxerga o slot se ele já existia e não tinha sido excluído até aquela versão.
+ */
+public class ColunarProdutoStore implements ProdutoStore {
+    private static final byte SEM_PRECO = Byte.MIN_VALUE;
+    private static final int SEM_DATA = Integer.MIN_VALUE;
+    private static final int SEM_CATEGORIA = -1;
+
+    private int n;      // slots usados (vivos + mortos)
+    private int vivos;
+    private int versao; // exclusões desde a última compactação
+    private int[] removidoEm = new int[16]; // 0 = vivo; senão, a versão da exclusão
+    private int[] hash = new int[16];       // hash da chave normalizada
+    private int[] texto = new int[16];      // posição de código/nome/descrição em textos
+    private long[] compra = new long[16];
+    private long[] venda = new long[16];
+    private byte[] escalaCompra = new byte[16];
+    private byte[] escalaVenda = new byte[16];
+    private int[] fabricacao = new int[16];
+    private int[] validade = new int[16];
+    private int[] quantidade = new int[16];
+    private int[] categoria = new int[16];
+
+    // dicionário de categorias (instâncias canônicas do CategoriaRegistro); o vetor é trocado a cada categoria nova
+    private Categoria[] categorias = new Categoria[0];
+    private final Map<Categoria, Integer> indiceCategoria = new IdentityHashMap<>();
+
+    // tabela de textos: por slot, 3 strings seguidas no formato [tamanho+1 (varint)][bytes UTF-8]; 0 = null
+    private byte[] textos = new byte[1024];
+    private int fimTextos;
+
+    // código -> slot: endereçamento aberto com sondagem linear; guarda slot+1 (0 = livre).
+    // Slots excluídos continuam na tabela (snapshots antigos ainda os encontram) até ela ser refeita.
+    private int[] tabela = new int[32];
+
+    private Visao atual; // visão do estado atual; null depois de cada alteração
+
+    @Override
+    public ProdutoSnapshot snapshot() {
+        return visao();
+    }
+
+    private Visao visao() {
+        var v = atual;
+        if (v == null) atual = v = new Visao(this);
+        return v;
+    }
+
+    @Override
+    public Produto buscar(String chave) {
+        return visao().buscar(chave);
+    }
+
+    @Override
+    public void incluir(Produto p) {
+        conferir(p); // antes de mexer em qualquer coluna: um produto recusado não deixa rastro
+        if (n == removidoEm.length) crescer();
+        int slot = n;
+        removidoEm[slot] = 0;
+        hash[slot] = ProdutoService.chave(p.getCodigo()).hashCode();
+        texto[slot] = fimTextos;
+        escreverTexto(p.getCodigo());
+        escreverTexto(p.getNome());
+        escreverTexto(p.getDescricao());
+        gravarPreco(p.getPrecoCompra(), compra, escalaCompra, slot);
+        gravarPreco(p.getPrecoVenda(), venda, escalaVenda, slot);
+        fabricacao[slot] = dia(p.getDataFabricacao());
+        validade[slot] = dia(p.getDataValidade());
+        quantidade[slot] = p.getQuantidadeEstoque();
+        categoria[slot] = indiceDaCategoria(p.getCategoria());
+        n++;
+        vivos++;
+        atual = null;
+
+        if (n * 2 > tabela.length) reconstruirTabela();
+        else registrarNaTabela(slot);
+    }
+
+    /**
+     * Confere o produto antes de excluir o antigo: recusado, o antigo continua no lugar.
+     */
+    @Override
+    public void substituir(Produto p) {
+        conferir(p);
+        ProdutoStore.super.substituir(p);
+    }
+
+    @Override
+    public Produto remover(String chave) {
+        var v = visao();
+        int slot = v.localizar(chave);
+        if (slot < 0) return null;
+        var p = v.produto(slot);
+        removidoEm[slot] = ++versao;
+        vivos--;
+        atual = null;
+        if (n - vivos > 1024 && n - vivos > vivos) compactar();
+        return p;
+    }
+
+    @Override
+    public int tamanho() {
+        return vivos;
+    }
+
+    @Override
+    public Collection<Produto> todos() {
+        return visao().todos();
+    }
+
+    @Override
+    public Map<String, Integer> tamanhosDosIndices() {
+        var mapa = new LinkedHashMap<String, Integer>();
+        mapa.put("slots", n);
+        mapa.put("vivos", vivos);
+        mapa.put("capacidade", removidoEm.length);
+        mapa.put("tabelaDeCodigos", tabela.length);
+        mapa.put("bytesDeTexto", fimTextos);
+        mapa.put("categorias", categorias.length);
+        return mapa;
+    }
+
+    @Override
+    public List<Produto> pagina(int inicio, int quantidade) {
+        return visao().pagina(inicio, quantidade);
+    }
+
+    @Override
+    public Stream<Produto> fluxo(int inicio) {
+        return visao().fluxo(inicio);
+    }
+
+    @Override
+    public List<Produto> validadeEntre(LocalDate de, LocalDate ate) {
+        return visao().validadeEntre(de, ate);
+    }
+
+    @Override
+    public Stream<Produto> fluxoValidadeEntre(LocalDate de, LocalDate ate) {
+        return visao().fluxoValidadeEntre(de, ate);
+    }
+
+    @Override
+    public List<Produto> estoqueAbaixoDe(int limite) {
+        return visao().estoqueAbaixoDe(limite);
+    }
+
+    @Override
+    public Stream<Produto> fluxoEstoqueAbaixoDe(int limite) {
+        return visao().fluxoEstoqueAbaixoDe(limite);
+    }
+
+    @Override
+    public List<Produto> doSetor(String setor) {
+        return visao().doSetor(setor);
+    }
+
+    /**
+     * Leitura dos vetores como estavam quando a visão foi criada (sem lock: só lê slots que não mudam mais).
+     */
+    private static final class Visao implements ProdutoSnapshot {
+        private final int n, vivos, versao;
+        private final int[] removidoEm, hash, texto, fabricacao, validade, quantidade, categoria, tabela;
+        private final long[] compra, venda;
+        private final byte[] escalaCompra, escalaVenda, textos;
+        private final Categoria[] categorias;
+
+        Visao(ColunarProdutoStore s) {
+            n = s.n;
+            vivos = s.vivos;
+            versao = s.versao;
+            removidoEm = s.removidoEm;
+            hash = s.hash;
+            texto = s.texto;
+            compra = s.compra;
+            venda = s.venda;
+            escalaCompra = s.escalaCompra;
+            escalaVenda = s.escalaVenda;
+            fabricacao = s.fabricacao;
+            validade = s.validade;
+            quantidade = s.quantidade;
+            categoria = s.categoria;
+            categorias = s.categorias;
+            textos = s.textos;
+            tabela = s.tabela;
+        }
+
+        private boolean vivo(int slot) {
+            int r = removidoEm[slot];
+            return r == 0 || r > versao;
+        }
+
+        @Override
+        public Produto buscar(String chave) {
+            int slot = localizar(chave);
+            return slot < 0 ? null : produto(slot);
+        }
+
+        @Override
+        public int tamanho() {
+            return vivos;
+        }
+
+        @Override
+        public Collection<Produto> todos() {
+            return new AbstractCollection<>() {
+                @Override
+                public Iterator<Produto> iterator() {
+                    return new Iterator<>() {
+                        int i = proximoVivo(0);
+
+                        @Override
+                        public boolean hasNext() { return i < n; }
+
+                        @Override
+                        public Produto next() {
+                            if (i >= n) throw new NoSuchElementException();
+                            var p = produto(i);
+                            i = proximoVivo(i + 1);
+                            return p;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() { return vivos; }
+            };
+        }
+
+        @Override
+        public List<Produto> pagina(int inicio, int quantidade) {
+            var lista = new ArrayList<Produto>(Math.max(0, Math.min(quantidade, vivos - inicio)));
+            for (int i = slotDaPosicao(inicio); i < n && lista.size() < quantidade; i = proximoVivo(i + 1)) lista.add(produto(i));
+            return lista;
+        }
+
+        @Override
+        public Stream<Produto> fluxo(int inicio) {
+            return IntStream.iterate(slotDaPosicao(inicio), i -> i < n, i -> proximoVivo(i + 1)).mapToObj(this::produto);
+        }
+
+        // sem slots mortos a posição é o próprio slot; senão, conta só os vivos (sem montar objetos)
+        private int slotDaPosicao(int posicao) {
+            int i = posicao;
+            if (n != vivos) {
+                i = proximoVivo(0);
+                for (int pulados = 0; pulados < posicao && i < n; pulados++) i = proximoVivo(i + 1);
+            }
+            return proximoVivo(i);
+        }
+
+        @Override
+        public List<Produto> validadeEntre(LocalDate de, LocalDate ate) {
+            return fluxoValidadeEntre(de, ate).toList();
+        }
+
+        @Override
+        public Stream<Produto> fluxoValidadeEntre(LocalDate de, LocalDate ate) {
+            if (ate.isBefore(de)) return Stream.empty();
+            int ini = dia(de), fim = dia(ate);
+            long[] chaves = new long[16];
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                int d = validade[i];
+                if (d != SEM_DATA && d >= ini && d <= fim && vivo(i)) {
+                    if (m == chaves.length) chaves = Arrays.copyOf(chaves, m * 2);
+                    chaves[m++] = ((long) d << 32) | i; // ordena por data e, no empate, pelo slot (ordem de inclusão)
+                }
+            }
+            return produtosOrdenados(chaves, m);
+        }
+
+        @Override
+        public List<Produto> estoqueAbaixoDe(int limite) {
+            return fluxoEstoqueAbaixoDe(limite).toList();
+        }
+
+        @Override
+        public Stream<Produto> fluxoEstoqueAbaixoDe(int limite) {
+            long[] chaves = new long[16];
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (quantidade[i] < limite && vivo(i)) {
+                    if (m == chaves.length) chaves = Arrays.copyOf(chaves, m * 2);
+                    chaves[m++] = ((long) quantidade[i] << 32) | i;
+                }
+            }
+            return produtosOrdenados(chaves, m);
+        }
+
+        @Override
+        public List<Produto> doSetor(String setor) {
+            String alvo = setor.trim();
+            var doSetor = new boolean[categorias.length];
+            boolean algum = false;
+            for (int c = 0; c < doSetor.length; c++) {
+                var s = categorias[c].getSetor();
+                doSetor[c] = s != null && s.trim().equalsIgnoreCase(alvo);
+                algum |= doSetor[c];
+            }
+            if (!algum) return List.of();
+
+            var lista = new ArrayList<Produto>();
+            for (int i = 0; i < n; i++) {
+                int c = categoria[i];
+                if (c != SEM_CATEGORIA && doSetor[c] && vivo(i)) lista.add(produto(i));
+            }
+            // sort estável: empates de nome ficam na ordem dos slots
+            lista.sort(Comparator.comparing(p -> p.getNome() == null ? "" : p.getNome(), String.CASE_INSENSITIVE_ORDER));
+            return Collections.unmodifiableList(lista);
+        }
+
+        // só as chaves (8 bytes por produto) são ordenadas; os objetos são montados conforme o fluxo é consumido
+        private Stream<Produto> produtosOrdenados(long[] chaves, int m) {
+            Arrays.sort(chaves, 0, m);
+            return Arrays.stream(chaves, 0, m).mapToObj(k -> produto((int) k));
+        }
+
+        private int proximoVivo(int i) {
+            while (i < n && !vivo(i)) i++;
+            return i;
+        }
+
+        /**
+         * Monta a visão do slot. Alterar o objeto devolvido não altera o armazenamento.
+         */
+        Produto produto(int slot) {
+            var p = new Produto();
+            int pos = texto[slot];
+            p.setCodigo(lerTexto(pos));
+            pos = pularTexto(pos);
+            p.setNome(lerTexto(pos));
+            pos = pularTexto(pos);
+            p.setDescricao(lerTexto(pos));
+            p.setPrecoCompra(escalaCompra[slot] == SEM_PRECO ? null : BigDecimal.valueOf(compra[slot], escalaCompra[slot]));
+            p.setPrecoVenda(escalaVenda[slot] == SEM_PRECO ? null : BigDecimal.valueOf(venda[slot], escalaVenda[slot]));
+            p.setDataFabricacao(fabricacao[slot] == SEM_DATA ? null : LocalDate.ofEpochDay(fabricacao[slot]));
+            p.setDataValidade(validade[slot] == SEM_DATA ? null : LocalDate.ofEpochDay(validade[slot]));
+            p.setQuantidadeEstoque(quantidade[slot]);
+            p.setCategoria(categoria[slot] == SEM_CATEGORIA ? null : categorias[categoria[slot]]);
+            return p;
+        }
+
+        /**
+         * Slot vivo (nesta visão) com o código, ou -1. Entradas de slots posteriores à visão são ignoradas.
+         */
+        int localizar(String chave) {
+            int h = chave.hashCode();
+            int mascara = tabela.length - 1;
+            for (int pos = espalhar(h) & mascara; ; pos = (pos + 1) & mascara) {
+                int v = tabela[pos];
+                if (v == 0) return -1;
+                int slot = v - 1;
+                if (slot < n && hash[slot] == h && vivo(slot)
+                        && chave.equals(ProdutoService.chave(lerTexto(texto[slot])))) return slot;
+            }
+        }
+
+        private String lerTexto(int pos) {
+            return ColunarProdutoStore.lerTexto(textos, pos);
+        }
+
+        private int pularTexto(int pos) {
+            return ColunarProdutoStore.pularTexto(textos, pos);
+        }
+    }
+
+    // ===== tabela código -> slot =====
+
+    private void registrarNaTabela(int slot) {
+        int mascara = tabela.length - 1;
+        int pos = espalhar(hash[slot]) & mascara;
+        while (tabela[pos] != 0) pos = (pos + 1) & mascara;
+        tabela[pos] = slot + 1;
+    }
+
+    /**
+     * Refaz a tabela (num vetor novo) só com os slots vivos, com pelo menos o dobro de posições.
+     */
+    private void reconstruirTabela() {
+        int tamanho = 32;
+        while (tamanho < n * 4) tamanho <<= 1;
+        tabela = new int[tamanho];
+        for (int i = 0; i < n; i++) if (removidoEm[i] == 0) registrarNaTabela(i);
+        atual = null;
+    }
+
+    private static int espalhar(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    // ===== vetores =====
+
+    private void crescer() {
+        int c = removidoEm.length * 2;
+        removidoEm = Arrays.copyOf(removidoEm, c);
+        hash = Arrays.copyOf(hash, c);
+        texto = Arrays.copyOf(texto, c);
+        compra = Arrays.copyOf(compra, c);
+        venda = Arrays.copyOf(venda, c);
+        escalaCompra = Arrays.copyOf(escalaCompra, c);
+        escalaVenda = Arrays.copyOf(escalaVenda, c);
+        fabricacao = Arrays.copyOf(fabricacao, c);
+        validade = Arrays.copyOf(validade, c);
+        quantidade = Arrays.copyOf(quantidade, c);
+        categoria = Arrays.copyOf(categoria, c);
+    }
+
+    /**
+     * Remove os slots mortos (e seus textos) mantendo a ordem dos vivos. Copia para vetores novos:
+     * os snapshots existentes continuam lendo os antigos.
+     */
+    private void compactar() {
+        int c = Math.max(16, Integer.highestOneBit(Math.max(1, vivos)) * 2);
+        var novoHash = new int[c];
+        var novoTexto = new int[c];
+        var novaCompra = new long[c];
+        var novaVenda = new long[c];
+        var novaEscalaCompra = new byte[c];
+        var novaEscalaVenda = new byte[c];
+        var novaFabricacao = new int[c];
+        var novaValidade = new int[c];
+        var novaQuantidade = new int[c];
+        var novaCategoria = new int[c];
+        var novosTextos = new byte[Math.max(1024, fimTextos / 2)];
+        int fimNovo = 0;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (removidoEm[i] != 0) continue;
+            // copia o bloco de 3 textos do slot
+            int tam = pularTexto(textos, pularTexto(textos, pularTexto(textos, texto[i]))) - texto[i];
+            if (fimNovo + tam > novosTextos.length) novosTextos = Arrays.copyOf(novosTextos, Math.max(novosTextos.length * 2, fimNovo + tam));
+            System.arraycopy(textos, texto[i], novosTextos, fimNovo, tam);
+
+            novoHash[j] = hash[i];
+            novoTexto[j] = fimNovo;
+            novaCompra[j] = compra[i];
+            novaVenda[j] = venda[i];
+            novaEscalaCompra[j] = escalaCompra[i];
+            novaEscalaVenda[j] = escalaVenda[i];
+            novaFabricacao[j] = fabricacao[i];
+            novaValidade[j] = validade[i];
+            novaQuantidade[j] = quantidade[i];
+            novaCategoria[j] = categoria[i];
+            fimNovo += tam;
+            j++;
+        }
+        removidoEm = new int[c];
+        hash = novoHash;
+        texto = novoTexto;
+        compra = novaCompra;
+        venda = novaVenda;
+        escalaCompra = novaEscalaCompra;
+        escalaVenda = novaEscalaVenda;
+        fabricacao = novaFabricacao;
+        validade = novaValidade;
+        quantidade = novaQuantidade;
+        categoria = novaCategoria;
+        n = j;
+        versao = 0; // os carimbos valem por geração de vetores
+        textos = novosTextos;
+        fimTextos = fimNovo;
+        reconstruirTabela();
+    }
+
+    // ===== conversões =====
+
+    // tudo o que as colunas podem recusar
+    private static void conferir(Produto p) {
+        conferirPreco(p.getPrecoCompra());
+        conferirPreco(p.getPrecoVenda());
+        dia(p.getDataFabricacao());
+        dia(p.getDataValidade());
+    }
+
+    private static void conferirPreco(BigDecimal v) {
+        if (v != null && (v.unscaledValue().bitLength() > 63 || v.scale() <= SEM_PRECO || v.scale() > Byte.MAX_VALUE))
+            throw new IllegalArgumentException("Preço fora da faixa do armazenamento colunar: " + v);
+    }
+
+    // só depois de conferir
+    private static void gravarPreco(BigDecimal v, long[] unscaled, byte[] escala, int slot) {
+        if (v == null) { escala[slot] = SEM_PRECO; return; }
+        unscaled[slot] = v.unscaledValue().longValue();
+        escala[slot] = (byte) v.scale();
+    }
+
+    private static int dia(LocalDate d) {
+        if (d == null) return SEM_DATA;
+        long dia = d.toEpochDay();
+        if (dia <= SEM_DATA || dia > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Data fora da faixa do armazenamento colunar: " + d);
+        return (int) dia;
+    }
+
+    private int indiceDaCategoria(Categoria c) {
+        if (c == null) return SEM_CATEGORIA;
+        return indiceCategoria.computeIfAbsent(c, k -> {
+            categorias = Arrays.copyOf(categorias, categorias.length + 1);
+            categorias[categorias.length - 1] = k;
+            return categorias.length - 1;
+        });
+    }
+
+    private void escreverTexto(String s) {
+        byte[] b = s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+        int tam = b == null ? 0 : b.length + 1;
+        int necessario = fimTextos + 5 + (b == null ? 0 : b.length);
+        if (necessario > textos.length) textos = Arrays.copyOf(textos, Math.max(textos.length * 2, necessario));
+        while ((tam & ~0x7F) != 0) {
+            textos[fimTextos++] = (byte) ((tam & 0x7F) | 0x80);
+            tam >>>= 7;
+        }
+        textos[fimTextos++] = (byte) tam;
+        if (b != null) {
+            System.arraycopy(b, 0, textos, fimTextos, b.length);
+            fimTextos += b.length;
+        }
+    }
+
+    // leitura sem estado no objeto: várias threads podem ler ao mesmo tempo
+    private static String lerTexto(byte[] textos, int pos) {
+        int tam = 0, desloc = 0;
+        byte b;
+        do {
+            b = textos[pos++];
+            tam |= (b & 0x7F) << desloc;
+            desloc += 7;
+        } while ((b & 0x80) != 0);
+        if (tam == 0) return null;
+        return new String(textos, pos, tam - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Posição logo depois do texto que começa em {@code pos}.
+     */
+    private static int pularTexto(byte[] textos, int pos) {
+        int tam = 0, desloc = 0;
+        byte b;
+        do {
+            b = textos[pos++];
+            tam |= (b & 0x7F) << desloc;
+            desloc += 7;
+        } while ((b & 0x80) != 0);
+        return tam == 0 ? pos : pos + tam - 1;
+    }
+}
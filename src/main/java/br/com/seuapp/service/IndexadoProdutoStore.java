@@ -0,0 +1,307 @@
+package br.com.seuapp.service;
+
+import br.com.seuapp.model.Produto;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento padrão: objetos {@link Produto} indexados por código e por ordem de inclusão, mais índices
+ * ordenados por setor/nome, validade e estoque, de modo que os relatórios são consultas de faixa.
+ * <p>
+ * Todos os índices são {@link ArvorePersistente árvores persistentes}: cada alteração cria uma versão nova
+ * (O(log n) nós por índice) e a anterior continua válida, então {@link #snapshot()} é só devolver a versão atual.
+ */
+public class IndexadoProdutoStore implements ProdutoStore {
+    // empates nos índices secundários ficam na ordem de inclusão (número de sequência do produto)
+    private static final Comparator<ChaveSetor> ORDEM_SETOR = Comparator
+            .comparing(ChaveSetor::setor)
+            .thenComparing(ChaveSetor::nome, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(ChaveSetor::seq);
+
+    private Versao atual = new Versao(ArvorePersistente.vazia(), ArvorePersistente.vazia(),
+            ArvorePersistente.vazia(ORDEM_SETOR), ArvorePersistente.vazia(), ArvorePersistente.vazia());
+    private long proximaSeq;
+
+    /**
+     * Uma versão do catálogo: os índices de um mesmo instante.
+     *
+     * @param seqPorCodigo código normalizado -> sequência (posição na ordem de inclusão)
+     * @param porSeq       sequência -> produto: a ordem de listar()
+     */
+    private record Versao(ArvorePersistente<String, Long> seqPorCodigo,
+                          ArvorePersistente<Long, Produto> porSeq,
+                          ArvorePersistente<ChaveSetor, Produto> porSetor,
+                          ArvorePersistente<ChaveNumero, Produto> porValidade,
+                          ArvorePersistente<ChaveNumero, Produto> porEstoque) implements ProdutoSnapshot {
+
+        @Override
+        public Produto buscar(String chave) {
+            Long seq = seqPorCodigo.buscar(chave);
+            return seq == null ? null : porSeq.buscar(seq);
+        }
+
+        @Override
+        public int tamanho() {
+            return porSeq.tamanho();
+        }
+
+        @Override
+        public Collection<Produto> todos() {
+            return new AbstractCollection<>() {
+                @Override
+                public Iterator<Produto> iterator() { return porSeq.valores().iterator(); }
+
+                @Override
+                public int size() { return porSeq.tamanho(); }
+            };
+        }
+
+        @Override
+        public List<Produto> pagina(int inicio, int quantidade) {
+            return fluxo(inicio).limit(quantidade).toList();
+        }
+
+        @Override
+        public Stream<Produto> fluxo(int inicio) {
+            // as sequências são crescentes: a posição na árvore é a posição na listagem
+            return porSeq.aPartirDaPosicao(inicio);
+        }
+
+        @Override
+        public List<Produto> validadeEntre(LocalDate de, LocalDate ate) {
+            return fluxoValidadeEntre(de, ate).toList();
+        }
+
+        @Override
+        public Stream<Produto> fluxoValidadeEntre(LocalDate de, LocalDate ate) {
+            if (ate.isBefore(de)) return Stream.empty();
+            return faixa(porValidade, de.toEpochDay(), ate.toEpochDay());
+        }
+
+        @Override
+        public List<Produto> estoqueAbaixoDe(int limite) {
+            return fluxoEstoqueAbaixoDe(limite).toList();
+        }
+
+        @Override
+        public Stream<Produto> fluxoEstoqueAbaixoDe(int limite) {
+            return faixa(porEstoque, Long.MIN_VALUE, (long) limite - 1);
+        }
+
+        @Override
+        public List<Produto> doSetor(String setor) {
+            return fluxoDoSetor(setor).toList();
+        }
+
+        @Override
+        public Stream<Produto> fluxoDoSetor(String setor) {
+            String s = chaveSetor(setor);
+            var alvo = new ChaveSetor(s, "", Long.MIN_VALUE);
+            // só o início precisa ser exato; o fim é onde a árvore passa para o próximo setor
+            return porSetor.entradasAPartirDe(alvo).takeWhile(e -> e.getKey().setor().equals(s)).map(Map.Entry::getValue);
+        }
+
+        private static Stream<Produto> faixa(ArvorePersistente<ChaveNumero, Produto> indice, long de, long ate) {
+            return indice.entradasAPartirDe(new ChaveNumero(de, Long.MIN_VALUE))
+                    .takeWhile(e -> e.getKey().valor() <= ate)
+                    .map(Map.Entry::getValue);
+        }
+    }
+
+    // chaves dos índices secundários
+    private record ChaveSetor(String setor, String nome, long seq) {}
+
+    private record ChaveNumero(long valor, long seq) implements Comparable<ChaveNumero> {
+        @Override
+        public int compareTo(ChaveNumero o) {
+            int c = Long.compare(valor, o.valor);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    @Override
+    public ProdutoSnapshot snapshot() {
+        return atual;
+    }
+
+    @Override
+    public Produto buscar(String chave) {
+        return atual.buscar(chave);
+    }
+
+    @Override
+    public void incluir(Produto p) {
+        long seq = proximaSeq++;
+        var v = comSecundarios(atual, p, seq);
+        atual = new Versao(v.seqPorCodigo().com(ProdutoService.chave(p.getCodigo()), seq), v.porSeq().com(seq, p),
+                v.porSetor(), v.porValidade(), v.porEstoque());
+    }
+
+    @Override
+    public boolean mantemPosicaoAoSubstituir() {
+        return true;
+    }
+
+    /**
+     * Mantém a sequência do produto antigo: a posição na listagem não muda.
+     */
+    @Override
+    public void substituir(Produto p) {
+        var v = atual;
+        Long seq = v.seqPorCodigo().buscar(ProdutoService.chave(p.getCodigo()));
+        if (seq == null) {
+            incluir(p);
+            return;
+        }
+        v = comSecundarios(semSecundarios(v, v.porSeq().buscar(seq), seq), p, seq);
+        atual = new Versao(v.seqPorCodigo(), v.porSeq().com(seq, p), v.porSetor(), v.porValidade(), v.porEstoque());
+    }
+
+    /**
+     * Com o armazenamento vazio, ordena as chaves de cada índice e monta as árvores já balanceadas, em vez de
+     * uma inclusão (e O(log n) nós copiados) por produto.
+     */
+    @Override
+    public void incluirTodos(List<Produto> lista) {
+        if (atual.tamanho() > 0) {
+            ProdutoStore.super.incluirTodos(lista);
+            return;
+        }
+        var codigos = new ArrayList<Map.Entry<String, Long>>(lista.size());
+        var seqs = new ArrayList<Long>(lista.size());
+        var setores = new ArrayList<Map.Entry<ChaveSetor, Produto>>();
+        var validades = new ArrayList<Map.Entry<ChaveNumero, Produto>>();
+        var estoques = new ArrayList<Map.Entry<ChaveNumero, Produto>>(lista.size());
+        for (var p : lista) {
+            long seq = proximaSeq++;
+            seqs.add(seq);
+            codigos.add(Map.entry(ProdutoService.chave(p.getCodigo()), seq));
+            var c = p.getCategoria();
+            if (c != null && c.getSetor() != null) setores.add(Map.entry(chaveDoSetor(p, seq), p));
+            if (p.getDataValidade() != null) validades.add(Map.entry(new ChaveNumero(p.getDataValidade().toEpochDay(), seq), p));
+            estoques.add(Map.entry(new ChaveNumero(p.getQuantidadeEstoque(), seq), p));
+        }
+        var v = atual;
+        atual = new Versao(
+                ordenada(v.seqPorCodigo(), codigos, Comparator.naturalOrder()),
+                v.porSeq().comOrdenados(seqs, lista), // as sequências já saem em ordem
+                ordenada(v.porSetor(), setores, ORDEM_SETOR),
+                ordenada(v.porValidade(), validades, Comparator.naturalOrder()),
+                ordenada(v.porEstoque(), estoques, Comparator.naturalOrder()));
+    }
+
+    private static <K, V> ArvorePersistente<K, V> ordenada(ArvorePersistente<K, V> vazia, List<Map.Entry<K, V>> pares,
+                                                          Comparator<? super K> ordem) {
+        pares.sort(Map.Entry.comparingByKey(ordem));
+        var chaves = new ArrayList<K>(pares.size());
+        var valores = new ArrayList<V>(pares.size());
+        for (var e : pares) {
+            chaves.add(e.getKey());
+            valores.add(e.getValue());
+        }
+        return vazia.comOrdenados(chaves, valores);
+    }
+
+    @Override
+    public Produto remover(String chave) {
+        var v = atual;
+        Long seq = v.seqPorCodigo().buscar(chave);
+        if (seq == null) return null;
+        var p = v.porSeq().buscar(seq);
+        v = semSecundarios(v, p, seq);
+        atual = new Versao(v.seqPorCodigo().sem(chave), v.porSeq().sem(seq), v.porSetor(), v.porValidade(), v.porEstoque());
+        return p;
+    }
+
+    // índices de setor/nome, validade e estoque com e sem o produto (o resto da versão fica como está)
+    private static Versao comSecundarios(Versao v, Produto p, long seq) {
+        var porSetor = v.porSetor();
+        var c = p.getCategoria();
+        if (c != null && c.getSetor() != null) porSetor = porSetor.com(chaveDoSetor(p, seq), p);
+        var porValidade = v.porValidade();
+        if (p.getDataValidade() != null) porValidade = porValidade.com(new ChaveNumero(p.getDataValidade().toEpochDay(), seq), p);
+        return new Versao(v.seqPorCodigo(), v.porSeq(), porSetor, porValidade,
+                v.porEstoque().com(new ChaveNumero(p.getQuantidadeEstoque(), seq), p));
+    }
+
+    private static Versao semSecundarios(Versao v, Produto p, long seq) {
+        var porSetor = v.porSetor();
+        var c = p.getCategoria();
+        if (c != null && c.getSetor() != null) porSetor = porSetor.sem(chaveDoSetor(p, seq));
+        var porValidade = v.porValidade();
+        if (p.getDataValidade() != null) porValidade = porValidade.sem(new ChaveNumero(p.getDataValidade().toEpochDay(), seq));
+        return new Versao(v.seqPorCodigo(), v.porSeq(), porSetor, porValidade,
+                v.porEstoque().sem(new ChaveNumero(p.getQuantidadeEstoque(), seq)));
+    }
+
+    @Override
+    public int tamanho() {
+        return atual.tamanho();
+    }
+
+    @Override
+    public Collection<Produto> todos() {
+        return atual.todos();
+    }
+
+    @Override
+    public Map<String, Integer> tamanhosDosIndices() {
+        var v = atual;
+        var mapa = new LinkedHashMap<String, Integer>();
+        mapa.put("codigo", v.seqPorCodigo().tamanho());
+        mapa.put("setorNome", v.porSetor().tamanho());
+        mapa.put("validade", v.porValidade().tamanho());
+        mapa.put("estoque", v.porEstoque().tamanho());
+        return mapa;
+    }
+
+    @Override
+    public List<Produto> pagina(int inicio, int quantidade) {
+        return atual.pagina(inicio, quantidade);
+    }
+
+    @Override
+    public Stream<Produto> fluxo(int inicio) {
+        return atual.fluxo(inicio);
+    }
+
+    @Override
+    public List<Produto> validadeEntre(LocalDate de, LocalDate ate) {
+        return atual.validadeEntre(de, ate);
+    }
+
+    @Override
+    public Stream<Produto> fluxoValidadeEntre(LocalDate de, LocalDate ate) {
+        return atual.fluxoValidadeEntre(de, ate);
+    }
+
+    @Override
+    public List<Produto> estoqueAbaixoDe(int limite) {
+        return atual.estoqueAbaixoDe(limite);
+    }
+
+    @Override
+    public Stream<Produto> fluxoEstoqueAbaixoDe(int limite) {
+        return atual.fluxoEstoqueAbaixoDe(limite);
+    }
+
+    @Override
+    public List<Produto> doSetor(String setor) {
+        return atual.doSetor(setor);
+    }
+
+    @Override
+    public Stream<Produto> fluxoDoSetor(String setor) {
+        return atual.fluxoDoSetor(setor);
+    }
+
+    private static ChaveSetor chaveDoSetor(Produto p, long seq) {
+        return new ChaveSetor(chaveSetor(p.getCategoria().getSetor()), p.getNome() == null ? "" : p.getNome(), seq);
+    }
+
+    private static String chaveSetor(String setor) {
+        return setor.trim().toLowerCase(Locale.ROOT);
+    }
+}
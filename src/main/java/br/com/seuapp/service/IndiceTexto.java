@@ -0,0 +1,250 @@
+package br.com.seuapp.service;
+
+import br.com.seuapp.model.Produto;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Índice invertido de palavras do nome, da descrição e da categoria (nome e setor), para a busca por texto.
+ * <p>
+ * As palavras são indexadas sem acento e em minúsculas ("Feijão" vira "feijao"). Cada produto recebe um
+ * número interno crescente e cada palavra guarda a lista ordenada desses números, com os campos em que aparece.
+ * Excluir só marca o número como livre; as listas são compactadas quando os números livres passam dos usados.
+ * <p>
+ * Não é thread-safe: o {@link ProdutoService} altera sob o lock de escrita e busca sob o de leitura.
+ */
+class IndiceTexto {
+    static final int NOME = 1, DESCRICAO = 2, CATEGORIA = 4;
+    // palavras que aparecem em quase tudo e não ajudam a achar o produto
+    private static final Set<String> IGNORADAS = Set.of("a", "o", "e", "de", "da", "do", "das", "dos", "com", "em");
+    private static final int COMPACTAR_A_PARTIR_DE = 10_000;
+
+    private final TreeMap<String, Postagens> palavras = new TreeMap<>();
+    private final Map<String, Integer> numeroPorChave = new HashMap<>();
+    private String[] chavePorNumero = new String[1024]; // null = excluído
+    private int proximo;
+    private int excluidos;
+
+    void incluir(String chave, Produto p) {
+        remover(chave);
+        if (proximo == chavePorNumero.length) chavePorNumero = Arrays.copyOf(chavePorNumero, proximo * 2);
+        int numero = proximo++;
+        chavePorNumero[numero] = chave;
+        numeroPorChave.put(chave, numero);
+
+        // campos de cada palavra do produto (a mesma palavra em dois campos vira uma postagem só)
+        var campos = new HashMap<String, Integer>();
+        palavrasDe(p.getNome(), NOME, campos);
+        palavrasDe(p.getDescricao(), DESCRICAO, campos);
+        if (p.getCategoria() != null) {
+            palavrasDe(p.getCategoria().getNome(), CATEGORIA, campos);
+            palavrasDe(p.getCategoria().getSetor(), CATEGORIA, campos);
+        }
+        campos.forEach((palavra, c) -> palavras.computeIfAbsent(palavra, k -> new Postagens()).adicionar(numero, c));
+    }
+
+    void remover(String chave) {
+        Integer numero = numeroPorChave.remove(chave);
+        if (numero == null) return;
+        chavePorNumero[numero] = null;
+        excluidos++;
+        if (excluidos >= COMPACTAR_A_PARTIR_DE && excluidos > numeroPorChave.size()) compactar();
+    }
+
+    int palavrasIndexadas() { return palavras.size(); }
+
+    /**
+     * Chaves dos produtos que têm todas as palavras da consulta (cada uma como palavra inteira ou início de palavra),
+     * da maior para a menor relevância. Relevância: palavra inteira vale o dobro do prefixo; nome pesa mais que
+     * categoria, que pesa mais que descrição. No empate, vale a ordem de cadastro.
+     */
+    List<String> buscar(String consulta, int limite) {
+        var termos = new LinkedHashSet<>(palavras(consulta));
+        if (termos.isEmpty()) termos.addAll(palavras(consulta, false)); // só "de", "com"...: vale como prefixo
+        if (termos.isEmpty() || limite <= 0) return List.of();
+
+        // pares (número, pontos) ordenados por número; a interseção vai do termo mais raro ao mais comum
+        var porTermo = new ArrayList<long[]>();
+        for (var termo : termos) {
+            var candidatos = candidatos(termo);
+            if (candidatos.length == 0) return List.of();
+            porTermo.add(candidatos);
+        }
+        porTermo.sort(Comparator.comparingInt(c -> c.length));
+        long[] resultado = porTermo.get(0);
+        for (int i = 1; i < porTermo.size() && resultado.length > 0; i++) resultado = intersecao(resultado, porTermo.get(i));
+
+        // ordena por pontos (desc.) e número (asc.), já descartando excluídos
+        var ordem = new long[resultado.length];
+        int n = 0;
+        for (long r : resultado) {
+            int numero = numero(r);
+            if (chavePorNumero[numero] != null) ordem[n++] = ((long) pontos(r) << 32) | (Integer.MAX_VALUE - numero);
+        }
+        Arrays.sort(ordem, 0, n);
+        var chaves = new ArrayList<String>(Math.min(n, limite));
+        for (int i = n - 1; i >= 0 && chaves.size() < limite; i--) {
+            chaves.add(chavePorNumero[Integer.MAX_VALUE - (int) ordem[i]]);
+        }
+        return chaves;
+    }
+
+    // postagens de todas as palavras que começam com o termo, uma por produto (a de mais pontos)
+    private long[] candidatos(String termo) {
+        var faixa = palavras.subMap(termo, true, termo + Character.MAX_VALUE, false);
+        if (faixa.isEmpty()) return new long[0];
+        if (faixa.size() == 1) {
+            var e = faixa.firstEntry();
+            return e.getValue().pares(e.getKey().equals(termo));
+        }
+        var listas = new ArrayList<long[]>(faixa.size());
+        for (var e : faixa.entrySet()) listas.add(e.getValue().pares(e.getKey().equals(termo)));
+        return unir(listas, 0, listas.size());
+    }
+
+    // junta listas já ordenadas, duas a duas; o mesmo produto em várias palavras fica com os maiores pontos
+    private static long[] unir(List<long[]> listas, int de, int ate) {
+        if (ate - de == 1) return listas.get(de);
+        int meio = (de + ate) >>> 1;
+        long[] a = unir(listas, de, meio), b = unir(listas, meio, ate);
+        var r = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            int na = numero(a[i]), nb = numero(b[j]);
+            if (na < nb) r[n++] = a[i++];
+            else if (na > nb) r[n++] = b[j++];
+            else r[n++] = par(na, Math.max(pontos(a[i++]), pontos(b[j++])));
+        }
+        while (i < a.length) r[n++] = a[i++];
+        while (j < b.length) r[n++] = b[j++];
+        return n == r.length ? r : Arrays.copyOf(r, n);
+    }
+
+    private static long[] intersecao(long[] a, long[] b) {
+        var r = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            int na = numero(a[i]), nb = numero(b[j]);
+            if (na < nb) i++;
+            else if (na > nb) j++;
+            else { r[n++] = par(na, pontos(a[i++]) + pontos(b[j++])); }
+        }
+        return Arrays.copyOf(r, n);
+    }
+
+    private static long par(int numero, int pontos) { return ((long) numero << 32) | pontos; }
+    private static int numero(long par) { return (int) (par >>> 32); }
+    private static int pontos(long par) { return (int) par; }
+
+    private static int pontos(int campos, boolean inteira) {
+        int p = ((campos & NOME) != 0 ? 4 : 0) + ((campos & CATEGORIA) != 0 ? 2 : 0) + ((campos & DESCRICAO) != 0 ? 1 : 0);
+        return inteira ? p * 2 : p;
+    }
+
+    /**
+     * Renumera os produtos que restaram e tira os excluídos das listas.
+     */
+    private void compactar() {
+        var novo = new int[proximo];
+        var chaves = new String[Math.max(1024, numeroPorChave.size() * 2)];
+        int n = 0;
+        for (int i = 0; i < proximo; i++) {
+            if (chavePorNumero[i] == null) { novo[i] = -1; continue; }
+            novo[i] = n;
+            chaves[n] = chavePorNumero[i];
+            numeroPorChave.put(chaves[n], n);
+            n++;
+        }
+        var it = palavras.values().iterator();
+        while (it.hasNext()) {
+            var p = it.next();
+            p.renumerar(novo);
+            if (p.tamanho == 0) it.remove();
+        }
+        chavePorNumero = chaves;
+        proximo = n;
+        excluidos = 0;
+    }
+
+    private static void palavrasDe(String texto, int campo, Map<String, Integer> campos) {
+        for (var palavra : palavras(texto)) campos.merge(palavra, campo, (a, b) -> a | b);
+    }
+
+    /**
+     * Palavras do texto sem acento, em minúsculas, sem as muito comuns ("de", "com"...).
+     */
+    static List<String> palavras(String texto) {
+        return palavras(texto, true);
+    }
+
+    private static List<String> palavras(String texto, boolean semComuns) {
+        if (texto == null || texto.isBlank()) return List.of();
+        var lista = new ArrayList<String>();
+        var atual = new StringBuilder();
+        String base = semAcento(texto);
+        for (int i = 0; i <= base.length(); i++) {
+            char c = i < base.length() ? base.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                atual.append(Character.toLowerCase(c));
+            } else if (!atual.isEmpty()) {
+                var palavra = atual.toString();
+                if (!semComuns || !IGNORADAS.contains(palavra)) lista.add(palavra);
+                atual.setLength(0);
+            }
+        }
+        return lista;
+    }
+
+    private static String semAcento(String texto) {
+        int i = 0;
+        while (i < texto.length() && texto.charAt(i) < 0x80) i++;
+        if (i == texto.length()) return texto; // ASCII: nada a tirar
+        var decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        var sb = new StringBuilder(decomposto.length());
+        for (int j = 0; j < decomposto.length(); j++) {
+            char c = decomposto.charAt(j);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Números dos produtos com a palavra (em ordem crescente) e os campos em que ela aparece.
+     */
+    private static final class Postagens {
+        int[] numeros = new int[4];
+        byte[] campos = new byte[4];
+        int tamanho;
+
+        void adicionar(int numero, int campo) {
+            if (tamanho == numeros.length) {
+                numeros = Arrays.copyOf(numeros, tamanho * 2);
+                campos = Arrays.copyOf(campos, tamanho * 2);
+            }
+            numeros[tamanho] = numero; // números só crescem: a lista continua ordenada
+            campos[tamanho++] = (byte) campo;
+        }
+
+        long[] pares(boolean inteira) {
+            var pares = new long[tamanho];
+            for (int i = 0; i < tamanho; i++) pares[i] = par(numeros[i], pontos(campos[i], inteira));
+            return pares;
+        }
+
+        void renumerar(int[] novo) {
+            int n = 0;
+            for (int i = 0; i < tamanho; i++) {
+                int numero = novo[numeros[i]];
+                if (numero < 0) continue;
+                numeros[n] = numero;
+                campos[n++] = campos[i];
+            }
+            tamanho = n;
+            if (n < numeros.length / 4) {
+                numeros = Arrays.copyOf(numeros, Math.max(4, n));
+                campos = Arrays.copyOf(campos, Math.max(4, n));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package br.com.seuapp.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Soma/contagem (e mín./máx.) das margens de um grupo de produtos, atualizada a cada inclusão/exclusão.
+ * <p>
+ * A média é exatamente a do {@code Collectors.averagingDouble} sobre o catálogo (o relatório de antes): a mesma
+ * soma compensada (Kahan) das margens em double, na ordem de listagem. Cada margem entra com a posição do produto
+ * na listagem ({@code ordem}); incluir no fim só continua a soma, e uma exclusão (ou inclusão no meio) faz a soma
+ * ser refeita na ordem, uma vez, na próxima leitura.
+ * <p>
+ * Imutável: incluir ou excluir uma margem devolve um acumulador novo (O(log n)), então a versão do catálogo
+ * publicada para os relatórios não muda enquanto o cadastro continua.
+ */
+final class MargemAcumulador {
+    static final MargemAcumulador VAZIO = new MargemAcumulador(ArvorePersistente.vazia(), ArvorePersistente.vazia(),
+            0, new double[3]);
+
+    // margem (em double, como o stream lia) de cada produto, pela ordem de listagem
+    private final ArvorePersistente<Long, Double> porOrdem;
+    // multiconjunto das margens (margem -> ocorrências), para manter mín./máx. corretos depois de exclusões
+    private final ArvorePersistente<BigDecimal, Integer> valores;
+    private final long quantidade;
+    // {soma, compensação (negada), soma simples} do averagingDouble; null: refazer na leitura
+    private final double[] soma;
+    private volatile double[] somaRefeita;
+
+    private MargemAcumulador(ArvorePersistente<Long, Double> porOrdem, ArvorePersistente<BigDecimal, Integer> valores,
+                             long quantidade, double[] soma) {
+        this.porOrdem = porOrdem;
+        this.valores = valores;
+        this.quantidade = quantidade;
+        this.soma = soma;
+    }
+
+    MargemAcumulador com(long ordem, BigDecimal margem) {
+        double valor = margem.doubleValue();
+        Integer n = valores.buscar(margem);
+        double[] atual = soma != null ? soma : somaRefeita;
+        boolean noFim = quantidade == 0 || ordem > porOrdem.ultimaChave();
+        return new MargemAcumulador(porOrdem.com(ordem, valor), valores.com(margem, n == null ? 1 : n + 1),
+                quantidade + 1, atual != null && noFim ? somar(atual.clone(), valor) : null);
+    }
+
+    MargemAcumulador sem(long ordem, BigDecimal margem) {
+        if (porOrdem.buscar(ordem) == null) return this;
+        Integer n = valores.buscar(margem);
+        return new MargemAcumulador(porOrdem.sem(ordem),
+                n == null ? valores : n == 1 ? valores.sem(margem) : valores.com(margem, n - 1),
+                quantidade - 1, null);
+    }
+
+    boolean vazio() { return quantidade == 0; }
+
+    long quantidade() { return quantidade; }
+
+    /**
+     * Mesmo resultado do averagingDouble sobre as margens do grupo, na ordem de listagem.
+     */
+    double media() {
+        if (quantidade == 0) return 0.0;
+        double[] s = soma != null ? soma : somaRefeita;
+        if (s == null) {
+            var refeita = new double[3];
+            porOrdem.forEach((ordem, valor) -> somar(refeita, valor));
+            somaRefeita = s = refeita;
+        }
+        // Collectors.computeFinalSum
+        double total = s[0] - s[1];
+        if (Double.isNaN(total) && Double.isInfinite(s[2])) total = s[2];
+        return total / quantidade;
+    }
+
+    double minima() { return valores.primeiraChave().doubleValue(); }
+
+    double maxima() { return valores.ultimaChave().doubleValue(); }
+
+    // Collectors.sumWithCompensation, mais a soma simples
+    private static double[] somar(double[] s, double valor) {
+        double tmp = valor - s[1];
+        double velvel = s[0] + tmp;
+        s[1] = (velvel - s[0]) - tmp;
+        s[0] = velvel;
+        s[2] += valor;
+        return s;
+    }
+
+    static ArvorePersistente<String, MargemAcumulador> adicionar(ArvorePersistente<String, MargemAcumulador> grupos,
+                                                                 String chave, long ordem, BigDecimal margem) {
+        var acc = grupos.buscar(chave);
+        return grupos.com(chave, (acc == null ? VAZIO : acc).com(ordem, margem));
+    }
+
+    static ArvorePersistente<String, MargemAcumulador> remover(ArvorePersistente<String, MargemAcumulador> grupos,
+                                                               String chave, long ordem, BigDecimal margem) {
+        var acc = grupos.buscar(chave);
+        if (acc == null) return grupos;
+        acc = acc.sem(ordem, margem);
+        return acc.vazio() ? grupos.sem(chave) : grupos.com(chave, acc);
+    }
+}
@@ -1,103 +1,962 @@
 package br.com.seuapp.service;
 
+import br.com.seuapp.metricas.Metricas;
+import br.com.seuapp.metricas.Monitoramento;
+import br.com.seuapp.metricas.Operacao;
 import br.com.seuapp.model.Produto;
 import br.com.seuapp.repository.ProdutoRepository;
+import br.com.seuapp.repository.RegistroDeMovimentos;
+import br.com.seuapp.util.Executores;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Regras do cadastro sobre o catálogo em memória. Seguro para uso concorrente (tela, servidor HTTP,
+ * write-behind): alterações pegam o lock de escrita e, para gravar em disco, rebaixam para o de leitura
+ * (a próxima alteração espera a gravação).
+ * <p>
+ * Consultas e relatórios não pegam lock: leem a última {@link Versao} publicada, um retrato imutável do
+ * catálogo e dos acumuladores de margem obtido em O(1). Uma alteração só aparece inteira, quando é publicada,
+ * e um relatório longo não segura as alterações (nem é afetado por elas). A busca por texto e a lista de vencidos
+ * ainda leem as suas estruturas sob o lock de leitura, só o tempo de separar as chaves.
+ * <p>
+ * Entradas e saídas de estoque ({@link #entrada}, {@link #saida}, {@link #movimentar}) também não esperam umas
+ * pelas outras: pegam o lock de leitura e mexem num contador atômico por produto ({@link SaldosDeEstoque}),
+ * que é levado ao catálogo (e ao disco) de tempos em tempos.
+ */
 public class ProdutoService {
-    private final List<Produto> produtos;
+    // catálogo em memória (índice por código e índices dos relatórios)
+    private final ProdutoStore produtos;
+    // acumuladores de margem (relatório "Margem"), atualizados junto com os índices
+    // (imutáveis: cada alteração troca a referência, sob o lock de escrita)
+    private ArvorePersistente<String, MargemAcumulador> margemPorCategoria = ArvorePersistente.vazia();
+    private ArvorePersistente<String, MargemAcumulador> margemPorSetor = ArvorePersistente.vazia(String.CASE_INSENSITIVE_ORDER);
+    private MargemAcumulador margemGeral = MargemAcumulador.VAZIO;
+    // posição de cada produto na ordem de listagem: as médias somam as margens nessa ordem, como o stream somava
+    private final Map<String, Long> ordemNaListagem = new HashMap<>();
+    private long proximaOrdem;
+    // o que as consultas enxergam: trocado de uma vez ao fim de cada alteração
+    private volatile Versao versao;
+    // busca por texto (nome, descrição, categoria)
+    private final IndiceTexto indiceTexto = new IndiceTexto();
+    // produtos por dia de validade; a roda anda uma vez por dia (relogio)
+    private final AgendaValidade validades = new AgendaValidade(LocalDate.now(), janelaDeValidadeConfigurada());
+    private volatile LocalDate diaDaAgenda = validades.hoje();
+    private final List<Consumer<AvisoValidade>> ouvintesValidade = new CopyOnWriteArrayList<>();
+    // avisos gerados sob o lock de escrita e entregues depois de soltá-lo
+    private final Queue<AvisoValidade> avisosPendentes = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService relogio = Executores.agendador("produtos-validade");
+    // movimentações de estoque ainda não consolidadas no catálogo, e o registro de auditoria delas
+    private final SaldosDeEstoque saldos = new SaldosDeEstoque();
+    private final RegistroDeMovimentos movimentos;
+    private final ScheduledExecutorService consolidacao = Executores.agendador("produtos-estoque");
+    private final AtomicBoolean consolidacaoAgendada = new AtomicBoolean();
+    private final long consolidarACadaMs = Long.getLong("produtos.estoque.consolidarMs", 1000);
     private final ProdutoRepository repo;
     private static final Pattern CODIGO_8 = Pattern.compile("^[A-Za-z0-9]{8}$");
+    private static final int LOTE_IMPORTACAO = 10_000;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     public ProdutoService(Path arquivoCSV) {
-        this.repo = new ProdutoRepository(arquivoCSV);
-        this.produtos = repo.carregar();
+        this(ProdutoRepository.configurado(arquivoCSV), armazenamentoConfigurado());
+    }
+
+    public ProdutoService(ProdutoRepository repo) {
+        this(repo, new IndexadoProdutoStore());
+    }
+
+    public ProdutoService(ProdutoRepository repo, ProdutoStore store) {
+        this.repo = repo;
+        this.produtos = store;
+        this.movimentos = new RegistroDeMovimentos(repo.getArquivo(), Long.getLong("produtos.movimentos.atrasoMs", 200));
+        var carregados = repo.carregar();
+        if (codigosDistintos(carregados)) {
+            produtos.incluirTodos(carregados);
+            for (var p : carregados) indexar(chave(p.getCodigo()), p);
+        } else {
+            for (var p : carregados) inserir(p); // o último com o mesmo código prevalece
+        }
+        publicar();
+        repo.setFonte(this::copiaDoCatalogo); // usado pelo write-behind, fora da thread que altera
+        Monitoramento.publicar(this, repo);
+        agendarVirada();
+    }
+
+    /**
+     * -Dprodutos.armazenamento=colunar usa o {@link ColunarProdutoStore}; o padrão é o {@link IndexadoProdutoStore}.
+     */
+    public static ProdutoStore armazenamentoConfigurado() {
+        return "colunar".equalsIgnoreCase(System.getProperty("produtos.armazenamento"))
+                ? new ColunarProdutoStore() : new IndexadoProdutoStore();
+    }
+
+    /**
+     * -Dprodutos.validade.janela=N: dias de antecedência do aviso de vencimento (padrão 60, o do relatório).
+     */
+    static int janelaDeValidadeConfigurada() {
+        return Integer.getInteger("produtos.validade.janela", 60);
     }
 
     // CRUD
     public void cadastrar(Produto p) {
-        validar(p, true);
-        produtos.removeIf(x -> x.getCodigo().equalsIgnoreCase(p.getCodigo()));
-        produtos.add(p);
-        repo.salvar(produtos);
+        long inicio = System.nanoTime();
+        try {
+            alterar(() -> {
+                validar(p, true);
+                p.setCategoria(repo.getCategorias().canonica(p.getCategoria()));
+                inserir(p);
+                return p;
+            }, incluido -> repo.gravarAlteracao(incluido, produtos.todos()));
+            entregarAvisos();
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.CADASTRAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.CADASTRAR, inicio);
+        }
     }
 
     public boolean excluir(String codigo) {
         if (codigo == null) return false;
+        long inicio = System.nanoTime();
         String alvo = codigo.trim();
-        boolean removed = produtos.removeIf(p ->
-                p.getCodigo() != null && p.getCodigo().trim().equalsIgnoreCase(alvo)
-        );
-        if (removed) repo.salvar(produtos);
-        return removed;
+        try {
+            return alterar(() -> remover(chave(alvo)) != null,
+                    removed -> { if (removed) repo.gravarExclusao(alvo, produtos.todos()); });
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.EXCLUIR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.EXCLUIR, inicio);
+        }
+    }
+
+    /**
+     * Troca só a quantidade em estoque do produto, sem passar pelo cadastro completo (o produto mantém a posição
+     * na listagem no armazenamento padrão). Devolve o produto atualizado, ou vazio se o código não existir.
+     * Com o repositório mapeado (-Dprodutos.mapeado=true) a gravação é uma escrita de 4 bytes, no lugar.
+     */
+    public Optional<Produto> alterarEstoque(String codigo, int quantidade) {
+        var alterado = atualizar(codigo, () -> {
+            if (quantidade < 0) throw new IllegalArgumentException("Quantidade em estoque não pode ser negativa.");
+        }, p -> {
+            saldos.retirar(chave(p.getCodigo())); // a quantidade informada vale mais que as movimentações pendentes
+            p.setQuantidadeEstoque(quantidade);
+        }, repo::gravarEstoque);
+        alterado.ifPresent(p -> movimentos.registrar(chave(p.getCodigo()), "AJUSTE", quantidade, quantidade));
+        return alterado;
+    }
+
+    /**
+     * Troca só os preços do produto, com as mesmas regras do cadastro (como em {@link #alterarEstoque}).
+     */
+    public Optional<Produto> alterarPrecos(String codigo, BigDecimal precoCompra, BigDecimal precoVenda) {
+        return atualizar(codigo, () -> validarPrecos(precoCompra, precoVenda), p -> {
+            p.setPrecoCompra(precoCompra);
+            p.setPrecoVenda(precoVenda);
+        }, repo::gravarPrecos);
+    }
+
+    private Optional<Produto> atualizar(String codigo, Runnable validacao, Consumer<Produto> mudanca,
+                                        BiConsumer<Produto, Collection<Produto>> gravacao) {
+        long inicio = System.nanoTime();
+        try {
+            validacao.run();
+            if (codigo == null) return Optional.empty();
+            String k = chave(codigo);
+            return alterar(() -> substituir(k, mudanca),
+                    alterado -> alterado.ifPresent(p -> gravacao.accept(p, produtos.todos())));
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.ATUALIZAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.ATUALIZAR, inicio);
+        }
+    }
+
+    /**
+     * Importa um CSV externo (mesmo layout do catálogo) em uma única gravação.
+     * As linhas são lidas em lotes e validadas em paralelo com as mesmas regras do cadastro;
+     * códigos repetidos no arquivo, ou já cadastrados (se {@code substituirExistentes} for false), são recusados.
+     * Se a leitura do arquivo falhar, nada é aplicado.
+     */
+    public ResultadoImportacao importar(Path origem, boolean substituirExistentes) throws IOException {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            return importarComLock(origem, substituirExistentes);
+        } catch (IOException | RuntimeException e) {
+            Metricas.falha(Operacao.IMPORTAR);
+            throw e;
+        } finally {
+            if (lock.isWriteLockedByCurrentThread()) lock.writeLock().unlock();
+            else lock.readLock().unlock();
+            entregarAvisos();
+            Metricas.registrar(Operacao.IMPORTAR, inicio);
+        }
+    }
+
+    // chamado com o lock de escrita; rebaixa para o de leitura antes de gravar
+    private ResultadoImportacao importarComLock(Path origem, boolean substituirExistentes) throws IOException {
+        var aceitos = new ArrayList<Produto>();
+        var erros = new ArrayList<ErroImportacao>();
+        var codigosNoArquivo = new HashSet<String>();
+        long[] lidas = {0};
+
+        repo.lerEmLotes(origem, LOTE_IMPORTACAO, lote -> {
+            lidas[0] += lote.size();
+            // validação (cara: regex, datas, BigDecimal) em paralelo; o resto é sequencial para manter a ordem do arquivo
+            var falhas = lote.parallelStream().map(this::falhaDeValidacao).toList();
+            for (int i = 0; i < lote.size(); i++) {
+                var linha = lote.get(i);
+                var p = linha.produto();
+                String codigo = p != null ? p.getCodigo() : null;
+                String falha = falhas.get(i);
+                if (falha == null) {
+                    String k = chave(codigo);
+                    if (!codigosNoArquivo.add(k)) falha = "Código repetido no arquivo.";
+                    else if (!substituirExistentes && produtos.buscar(k) != null) falha = "Código já existente.";
+                }
+                if (falha != null) erros.add(new ErroImportacao(linha.numero(), codigo, falha));
+                else aceitos.add(p);
+            }
+        });
+
+        for (var p : aceitos) {
+            p.setCategoria(repo.getCategorias().canonica(p.getCategoria()));
+            inserir(p);
+        }
+        publicar();
+        rebaixar();
+        if (!aceitos.isEmpty()) repo.gravarImportacao(aceitos, produtos.todos());
+        return new ResultadoImportacao(lidas[0], aceitos.size(), erros);
+    }
+
+    /**
+     * Consolida as movimentações de estoque e grava agora as alterações pendentes do write-behind
+     * (sem write-behind e sem movimentações não faz nada).
+     */
+    public void flush() {
+        consolidarEstoque();
+        movimentos.flush();
+        repo.flush();
+    }
+
+    /**
+     * Grava o que estiver pendente e libera a thread de escrita; chamar ao encerrar a aplicação.
+     */
+    public void fechar() {
+        relogio.shutdownNow();
+        consolidacao.shutdownNow();
+        consolidarEstoque();
+        movimentos.fechar();
+        repo.fechar();
+    }
+
+    // ===== movimentação de estoque =====
+
+    /**
+     * Entrada de {@code quantidade} unidades no estoque do produto; devolve o saldo depois dela.
+     * Código inexistente ou quantidade não positiva: IllegalArgumentException.
+     */
+    public int entrada(String codigo, int quantidade) {
+        return mover(Movimento.entrada(codigo, quantidade)).getAsInt();
+    }
+
+    /**
+     * Saída (venda, baixa) de {@code quantidade} unidades; devolve o saldo depois dela, ou vazio se o estoque
+     * não bastar (nada muda). Saídas simultâneas do mesmo produto não fazem fila num lock: cada uma é um
+     * compare-and-set no saldo do produto, e o saldo nunca fica negativo.
+     */
+    public OptionalInt saida(String codigo, int quantidade) {
+        return mover(Movimento.saida(codigo, quantidade));
+    }
+
+    /**
+     * Aplica as movimentações juntas (um carrinho no caixa): ou todas entram, ou nenhuma; devolve false se
+     * alguma saída não coube no estoque. As saídas são feitas primeiro e desfeitas se uma delas faltar
+     * (enquanto isso, outras saídas veem o estoque já tirado por este lote).
+     */
+    public boolean movimentar(List<Movimento> lote) {
+        long inicio = System.nanoTime();
+        // desfazer uma saída (devolver ao estoque) sempre cabe; desfazer uma entrada, não
+        var ordenados = new ArrayList<>(lote);
+        ordenados.sort(Comparator.comparing(m -> m.tipo() == Movimento.Tipo.ENTRADA));
+        var saldosDepois = new int[ordenados.size()];
+        int feitos = 0;
+        lock.readLock().lock();
+        try {
+            for (var m : ordenados) {
+                if (versao.produtos().buscar(chave(m.codigo())) == null) throw produtoNaoEncontrado(m.codigo());
+            }
+            for (; feitos < ordenados.size(); feitos++) {
+                var m = ordenados.get(feitos);
+                int saldo = somar(chave(m.codigo()), m.delta());
+                if (saldo == SaldosDeEstoque.INSUFICIENTE) break;
+                saldosDepois[feitos] = saldo;
+            }
+            if (feitos < ordenados.size()) {
+                desfazer(ordenados, feitos);
+                return false;
+            }
+        } catch (RuntimeException e) {
+            desfazer(ordenados, feitos);
+            Metricas.falha(Operacao.MOVIMENTAR);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            Metricas.registrar(Operacao.MOVIMENTAR, inicio);
+        }
+        for (int i = 0; i < ordenados.size(); i++) {
+            var m = ordenados.get(i);
+            movimentos.registrar(chave(m.codigo()), m.tipo().name(), m.quantidade(), saldosDepois[i]);
+        }
+        agendarConsolidacao();
+        return true;
+    }
+
+    /**
+     * Movimentações do produto registradas para auditoria (o ajuste de {@link #alterarEstoque} aparece como "AJUSTE"),
+     * da mais antiga para a mais recente, em {@code <catálogo>.movimentos}.
+     */
+    public List<RegistroDeMovimentos.Lancamento> movimentosDoProduto(String codigo) throws IOException {
+        return movimentos.doProduto(chave(codigo));
+    }
+
+    /**
+     * Leva os saldos movimentados para o catálogo (listagem, relatórios) e para o repositório, numa alteração só.
+     * Roda sozinho até -Dprodutos.estoque.consolidarMs=N (padrão 1000) depois da primeira movimentação pendente;
+     * até lá {@link #consultar} já mostra o saldo movimentado, mas os relatórios mostram o da última consolidação.
+     */
+    public void consolidarEstoque() {
+        consolidacaoAgendada.set(false); // o que for movimentado a partir daqui agenda outra consolidação
+        if (saldos.vazio()) return;
+        alterar(() -> {
+            var alterados = new ArrayList<Produto>();
+            saldos.consolidar((k, saldo) -> {
+                var antigo = produtos.buscar(k);
+                if (antigo == null || antigo.getQuantidadeEstoque() == saldo) return;
+                var novo = copia(antigo);
+                novo.setQuantidadeEstoque(saldo);
+                trocar(k, antigo, novo);
+                alterados.add(novo);
+            });
+            return alterados;
+        }, alterados -> { if (!alterados.isEmpty()) repo.gravarEstoques(alterados, produtos.todos()); });
+    }
+
+    private OptionalInt mover(Movimento m) {
+        long inicio = System.nanoTime();
+        String k = chave(m.codigo());
+        int saldo;
+        lock.readLock().lock(); // só exclui cadastro/exclusão/consolidação: as movimentações não esperam umas pelas outras
+        try {
+            saldo = somar(k, m.delta());
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.MOVIMENTAR);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            Metricas.registrar(Operacao.MOVIMENTAR, inicio);
+        }
+        if (saldo == SaldosDeEstoque.INSUFICIENTE) return OptionalInt.empty();
+        movimentos.registrar(k, m.tipo().name(), m.quantidade(), saldo);
+        agendarConsolidacao();
+        return OptionalInt.of(saldo);
+    }
+
+    // com o lock de leitura: a versão publicada não muda, então o primeiro movimento parte da quantidade que vale
+    private int somar(String k, int delta) {
+        return saldos.somar(k, delta, () -> {
+            var p = versao.produtos().buscar(k);
+            if (p == null) throw produtoNaoEncontrado(k);
+            return p.getQuantidadeEstoque();
+        });
     }
 
+    private void desfazer(List<Movimento> ordenados, int feitos) {
+        for (int i = feitos - 1; i >= 0; i--) {
+            var m = ordenados.get(i);
+            somar(chave(m.codigo()), -m.delta());
+        }
+    }
+
+    private static IllegalArgumentException produtoNaoEncontrado(String codigo) {
+        return new IllegalArgumentException("Produto não encontrado: " + (codigo == null ? "" : codigo.trim()) + ".");
+    }
+
+    private void agendarConsolidacao() {
+        if (!consolidacaoAgendada.compareAndSet(false, true)) return;
+        try {
+            consolidacao.schedule(() -> {
+                try {
+                    consolidarEstoque();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // os saldos continuam valendo; a próxima movimentação agenda de novo
+                }
+            }, consolidarACadaMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // serviço fechado
+        }
+    }
+
+    // ===== validade =====
+
+    /**
+     * Registra quem deve ser avisado quando um produto entra na janela de vencimento
+     * (-Dprodutos.validade.janela, padrão 60 dias) ou vence. Os avisos chegam na virada do dia
+     * (thread do relógio) e em cadastros/importações (thread de quem alterou), fora do lock do catálogo.
+     */
+    public void aoAvisarValidade(Consumer<AvisoValidade> ouvinte) {
+        ouvintesValidade.add(Objects.requireNonNull(ouvinte));
+    }
+
+    public void removerOuvinteValidade(Consumer<AvisoValidade> ouvinte) {
+        ouvintesValidade.remove(ouvinte);
+    }
+
+    /**
+     * Produtos com validade anterior a hoje, já separados pela agenda de validade.
+     */
+    public List<Produto> vencidos() {
+        atualizarDia();
+        return noRetrato(validades::vencidos).toList();
+    }
+
+    public int quantidadeVencidos() {
+        atualizarDia();
+        return lendo(validades::quantidadeVencidos);
+    }
+
+    /**
+     * Avança a agenda até a data de hoje, avisando o que venceu ou entrou na janela. Roda sozinho
+     * logo depois da meia-noite; as consultas de validade também chamam, caso o relógio tenha atrasado.
+     */
+    public void atualizarDia() {
+        var hoje = LocalDate.now();
+        if (!hoje.isAfter(diaDaAgenda)) return;
+        lock.writeLock().lock();
+        try {
+            if (hoje.isAfter(diaDaAgenda)) {
+                validades.avancar(hoje, (tipo, chave, dia) -> {
+                    if (!ouvintesValidade.isEmpty()) avisosPendentes.add(new AvisoValidade(tipo, produtos.buscar(chave), hoje));
+                });
+                diaDaAgenda = hoje;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        entregarAvisos();
+    }
+
+    private void agendarVirada() {
+        var agora = LocalDateTime.now();
+        var virada = agora.toLocalDate().plusDays(1).atStartOfDay().plusSeconds(1);
+        long ms = Math.max(1, Duration.between(agora, virada).toMillis());
+        try {
+            relogio.schedule(() -> {
+                try {
+                    atualizarDia();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // o relógio segue para o próximo dia
+                }
+                agendarVirada();
+            }, ms, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // serviço fechado
+        }
+    }
+
+    private void entregarAvisos() {
+        AvisoValidade aviso;
+        while ((aviso = avisosPendentes.poll()) != null) {
+            for (var ouvinte : ouvintesValidade) {
+                try {
+                    ouvinte.accept(aviso);
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // um ouvinte com erro não impede os outros
+                }
+            }
+        }
+    }
+
+    /**
+     * Separa as chaves sob o lock de leitura (a estrutura que as fornece é mutável) e monta os produtos
+     * pela versão publicada naquele momento, já sem lock.
+     */
+    private Stream<Produto> noRetrato(Supplier<List<String>> chaves) {
+        Versao v;
+        List<String> lista;
+        lock.readLock().lock();
+        try {
+            lista = chaves.get();
+            v = versao; // alterações publicam com o lock de escrita: a versão corresponde às chaves
+        } finally {
+            lock.readLock().unlock();
+        }
+        return lista.stream().map(v.produtos()::buscar);
+    }
+
+    // o write-behind grava a versão publicada: já é imutável, não precisa copiar
+    private Collection<Produto> copiaDoCatalogo() {
+        return versao.produtos().todos();
+    }
+
+    /**
+     * Publica o estado atual para as consultas. Chamado com o lock de escrita, ao fim de cada alteração.
+     */
+    private void publicar() {
+        versao = new Versao(produtos.snapshot(), margemPorCategoria, margemPorSetor, margemGeral);
+    }
+
+    /**
+     * Aplica a alteração com o lock de escrita e grava com o de leitura: enquanto o disco trabalha,
+     * consultas continuam sendo atendidas, e a próxima alteração só entra depois da gravação (mantém a ordem).
+     */
+    private <T> T alterar(Supplier<T> alteracao, Consumer<T> gravacao) {
+        T resultado;
+        lock.writeLock().lock();
+        try {
+            resultado = alteracao.get();
+            publicar();
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            gravacao.accept(resultado);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return resultado;
+    }
+
+    private void rebaixar() {
+        lock.readLock().lock();
+        lock.writeLock().unlock();
+    }
+
+    private <T> T relatorioDeMargem(Function<Versao, T> leitura) {
+        long inicio = System.nanoTime();
+        try {
+            return leitura.apply(versao);
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.MARGEM);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.MARGEM, inicio);
+        }
+    }
+
+    private <T> T lendo(Supplier<T> leitura) {
+        lock.readLock().lock();
+        try {
+            return leitura.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String falhaDeValidacao(ProdutoRepository.LinhaCSV linha) {
+        if (linha.erro() != null) return linha.erro();
+        try {
+            validar(linha.produto(), false);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
 
     public Optional<Produto> consultar(String codigo) {
-        return produtos.stream().filter(p -> p.getCodigo().equalsIgnoreCase(codigo)).findFirst();
+        if (codigo == null) return Optional.empty();
+        long inicio = System.nanoTime();
+        String k = chave(codigo);
+        try {
+            var p = versao.produtos().buscar(k);
+            Integer saldo = p == null ? null : saldos.atual(k);
+            if (saldo == null || saldo == p.getQuantidadeEstoque()) return Optional.ofNullable(p);
+            var vivo = copia(p); // movimentado desde a última consolidação
+            vivo.setQuantidadeEstoque(saldo);
+            return Optional.of(vivo);
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.CONSULTAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.CONSULTAR, inicio);
+        }
     }
 
+    /**
+     * Cópia do catálogo inteiro. Para percorrer ou exportar sem copiar, veja {@link #percorrer} e {@link #exportar}.
+     */
     public List<Produto> listar() {
-        return new ArrayList<>(produtos);
+        long inicio = System.nanoTime();
+        try {
+            return new ArrayList<>(versao.produtos().todos());
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.LISTAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.LISTAR, inicio);
+        }
+    }
+
+    /**
+     * Uma página da listagem (mesma ordem de {@link #listar()}), para telas que não precisam do catálogo inteiro.
+     */
+    public List<Produto> listar(int inicio, int quantidade) {
+        long t0 = System.nanoTime();
+        try {
+            if (inicio < 0 || quantidade < 0) throw new IllegalArgumentException("Início e quantidade não podem ser negativos.");
+            return versao.produtos().pagina(inicio, quantidade);
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.LISTAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.LISTAR, t0);
+        }
     }
 
-    // Relatórios (Streams)
+    public int quantidade() {
+        return versao.produtos().tamanho();
+    }
+
+    /**
+     * Percorre o resultado da consulta a partir da posição {@code inicio}, até {@code limite} produtos, sem copiar
+     * o catálogo: os produtos vêm direto dos índices, conforme o fluxo é consumido. O fluxo percorre a versão
+     * publicada quando a consulta começou: vê o catálogo num estado único e não segura as alterações, que
+     * continuam (e podem ser feitas de dentro de {@code leitura}) sem aparecer nele.
+     */
+    public <T> T percorrer(Consulta consulta, long inicio, long limite, Function<Stream<Produto>, T> leitura) {
+        return retrato(consulta).percorrer(inicio, limite, leitura);
+    }
+
+    /**
+     * Fixa a consulta na versão publicada agora, para ser lida aos pedaços (as páginas de uma tela): todas as
+     * leituras do {@link Retrato} devolvido vêm desse mesmo estado, mesmo que o catálogo mude entre uma e outra.
+     */
+    public Retrato retrato(Consulta consulta) {
+        if (consulta.tipo() == Consulta.Tipo.PROXIMOS_A_VENCER || consulta.tipo() == Consulta.Tipo.VENCIDOS) atualizarDia();
+        String texto = consulta.texto();
+        boolean semTexto = texto == null || texto.isBlank();
+        if (consulta.tipo() == Consulta.Tipo.SETOR && !semTexto && !repo.aceitaSetor(texto)) {
+            // setor fora desta instância: lido uma vez do disco
+            return new Retrato(consulta, versao.produtos(), diaDaAgenda, null, setorNaoCarregado(texto));
+        }
+        Versao v;
+        List<String> chaves = null;
+        lock.readLock().lock();
+        try {
+            // as chaves vêm de estruturas mutáveis: separadas junto com a versão que corresponde a elas
+            if (consulta.tipo() == Consulta.Tipo.VENCIDOS) chaves = validades.vencidos();
+            else if (consulta.tipo() == Consulta.Tipo.BUSCA && !semTexto && consulta.numero() > 0)
+                chaves = indiceTexto.buscar(texto, consulta.numero());
+            v = versao;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Retrato(consulta, v.produtos(), diaDaAgenda, chaves, null);
+    }
+
+    /**
+     * Grava o resultado da consulta em CSV no formato do catálogo (".gz" sai comprimido), em blocos, direto dos
+     * índices: a memória usada não depende do tamanho do resultado. Como em {@link #percorrer}, o arquivo
+     * corresponde a um único estado do catálogo, e o cadastro segue enquanto ele é gravado.
+     * Devolve a quantidade de produtos gravados.
+     */
+    public long exportar(Consulta consulta, Path destino) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            return retrato(consulta).percorrerSemMedir(0, Long.MAX_VALUE, fluxo -> {
+                try {
+                    return repo.exportar(fluxo, destino);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Metricas.falha(Operacao.EXPORTAR);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.EXPORTAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.EXPORTAR, inicio);
+        }
+    }
+
+    /**
+     * Tamanho das estruturas do catálogo em memória (exposto no JMX).
+     */
+    public Map<String, Integer> tamanhosDosIndices() {
+        return lendo(() -> {
+            var mapa = new LinkedHashMap<>(produtos.tamanhosDosIndices());
+            mapa.put("palavrasDaBusca", indiceTexto.palavrasIndexadas());
+            mapa.put("validadeNaJanela", validades.quantidadeNaJanela());
+            mapa.put("validadeVencidos", validades.quantidadeVencidos());
+            mapa.put("saldosNaoConsolidados", saldos.quantidade());
+            return mapa;
+        });
+    }
+
+    /**
+     * Busca por palavras (ou começo de palavras) do nome, da descrição e da categoria, sem diferenciar
+     * acentos e maiúsculas: "iogurte", "espag", "feijao carioca". Todos os termos precisam aparecer;
+     * os produtos vêm do mais relevante (termo no nome, palavra inteira) para o menos relevante.
+     */
+    public List<Produto> buscar(String texto, int limite) {
+        long inicio = System.nanoTime();
+        try {
+            if (limite < 0) throw new IllegalArgumentException("Limite não pode ser negativo.");
+            if (texto == null || texto.isBlank()) return List.of();
+            return noRetrato(() -> indiceTexto.buscar(texto, limite)).toList();
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.BUSCAR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.BUSCAR, inicio);
+        }
+    }
+
+    // Relatórios (índices)
     public List<Produto> proximosAVencer(int dias) {
-        var limite = LocalDate.now().plusDays(dias);
-        return produtos.stream()
-                .filter(p -> p.getDataValidade()!=null && !p.getDataValidade().isBefore(LocalDate.now()) && !p.getDataValidade().isAfter(limite))
-                .sorted(Comparator.comparing(Produto::getDataValidade))
-                .toList();
+        atualizarDia();
+        long inicio = System.nanoTime();
+        try {
+            if (dias < 0) return List.of();
+            var hoje = diaDaAgenda;
+            return versao.produtos().validadeEntre(hoje, hoje.plusDays(dias));
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.PROXIMOS_A_VENCER);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.PROXIMOS_A_VENCER, inicio);
+        }
     }
 
     public List<Produto> estoqueBaixo(int limite) {
-        return produtos.stream()
-                .filter(p -> p.getQuantidadeEstoque() < limite)
-                .sorted(Comparator.comparingInt(Produto::getQuantidadeEstoque))
-                .toList();
+        long inicio = System.nanoTime();
+        try {
+            return versao.produtos().estoqueAbaixoDe(limite);
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.ESTOQUE_BAIXO);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.ESTOQUE_BAIXO, inicio);
+        }
     }
 
     public Map<String, Double> margemMediaPorCategoria() {
         // margem = (precoVenda - precoCompra) / precoCompra
-        return produtos.stream()
-                .filter(p -> p.getPrecoCompra()!=null && p.getPrecoCompra().compareTo(BigDecimal.ZERO) > 0
-                        && p.getPrecoVenda()!=null)
-                .collect(Collectors.groupingBy(
-                        p -> p.getCategoria()!=null? p.getCategoria().getNome() : "Sem Categoria",
-                        Collectors.averagingDouble(p ->
-                                p.getPrecoVenda().subtract(p.getPrecoCompra())
-                                        .divide(p.getPrecoCompra(), 4, java.math.RoundingMode.HALF_UP)
-                                        .doubleValue())
-                ));
+        return relatorioDeMargem(v -> {
+            var mapa = new HashMap<String, Double>();
+            v.margemPorCategoria().forEach((cat, acc) -> mapa.put(cat, acc.media()));
+            return mapa;
+        });
+    }
+
+    public Map<String, Double> margemMediaPorSetor() {
+        return relatorioDeMargem(v -> {
+            var mapa = new LinkedHashMap<String, Double>();
+            v.margemPorSetor().forEach((setor, acc) -> mapa.put(setor, acc.media()));
+            return mapa;
+        });
+    }
+
+    public Map<String, ResumoMargem> resumoMargemPorCategoria() {
+        return relatorioDeMargem(v -> {
+            var mapa = new HashMap<String, ResumoMargem>();
+            v.margemPorCategoria().forEach((cat, acc) -> mapa.put(cat, resumo(acc)));
+            return mapa;
+        });
     }
 
+    public Map<String, ResumoMargem> resumoMargemPorSetor() {
+        return relatorioDeMargem(v -> {
+            var mapa = new LinkedHashMap<String, ResumoMargem>();
+            v.margemPorSetor().forEach((setor, acc) -> mapa.put(setor, resumo(acc)));
+            return mapa;
+        });
+    }
+
+    /**
+     * Resumo de todos os produtos com margem calculável; vazio se não houver nenhum.
+     */
+    public Optional<ResumoMargem> resumoMargemGeral() {
+        return relatorioDeMargem(v -> v.margemGeral().vazio() ? Optional.empty() : Optional.of(resumo(v.margemGeral())));
+    }
+
+    private static ResumoMargem resumo(MargemAcumulador acc) {
+        return new ResumoMargem(acc.quantidade(), acc.media(), acc.minima(), acc.maxima());
+    }
+
+    /**
+     * Produtos do setor, por nome. Um setor que esta instância não carregou (-Dprodutos.setores) é lido direto
+     * da sua partição no disco, sem entrar no catálogo em memória.
+     */
     public List<Produto> listarPorSetor(String setor) {
         if (setor == null || setor.isBlank()) return List.of();
-        String alvo = setor.trim();
+        long inicio = System.nanoTime();
+        try {
+            if (!repo.aceitaSetor(setor)) return setorNaoCarregado(setor);
+            return versao.produtos().doSetor(setor);
+        } catch (RuntimeException e) {
+            Metricas.falha(Operacao.LISTAR_POR_SETOR);
+            throw e;
+        } finally {
+            Metricas.registrar(Operacao.LISTAR_POR_SETOR, inicio);
+        }
+    }
+
+    // mesma ordem do índice de setor: nome sem diferenciar maiúsculas e, nos empates, a do arquivo
+    private List<Produto> setorNaoCarregado(String setor) {
+        var lista = repo.lerSetor(setor);
+        lista.sort(Comparator.comparing(p -> p.getNome() == null ? "" : p.getNome(), String.CASE_INSENSITIVE_ORDER));
+        return lista;
+    }
+
+    // Manutenção do catálogo e dos acumuladores
+    private void inserir(Produto p) {
+        String k = chave(p.getCodigo());
+        remover(k); // reinserir leva o produto para o fim, como antes
+        produtos.incluir(p);
+        indexar(k, p);
+    }
+
+    // busca, agenda e margens; o produto já está no armazenamento
+    private void indexar(String k, Produto p) {
+        indiceTexto.incluir(k, p);
+        var aviso = validades.incluir(k, p.getDataValidade());
+        if (aviso != null && !ouvintesValidade.isEmpty()) avisosPendentes.add(new AvisoValidade(aviso, p, diaDaAgenda));
 
-        return produtos.stream()
-                .filter(p -> p.getCategoria() != null
-                        && p.getCategoria().getSetor() != null
-                        && p.getCategoria().getSetor().trim().equalsIgnoreCase(alvo))
-                .sorted(java.util.Comparator.comparing(Produto::getNome, String.CASE_INSENSITIVE_ORDER))
-                .toList();
+        long ordem = proximaOrdem++;
+        ordemNaListagem.put(k, ordem);
+        somarMargem(p, ordem);
     }
 
+    // os produtos já publicados não mudam: a alteração é feita numa cópia, que toma o lugar do original
+    private Optional<Produto> substituir(String k, Consumer<Produto> mudanca) {
+        var antigo = produtos.buscar(k);
+        if (antigo == null) return Optional.empty();
+        var novo = copia(antigo);
+        mudanca.accept(novo);
+        trocar(k, antigo, novo);
+        return Optional.of(novo);
+    }
+
+    // troca o produto no armazenamento; as margens acompanham a posição dele na listagem
+    private void trocar(String k, Produto antigo, Produto novo) {
+        produtos.substituir(novo);
+        boolean mantemPosicao = produtos.mantemPosicaoAoSubstituir();
+        if (mantemPosicao && Objects.equals(margem(antigo), margem(novo))) return;
+        long ordem = ordemNaListagem.get(k);
+        subtrairMargem(antigo, ordem);
+        if (!mantemPosicao) {
+            ordem = proximaOrdem++;
+            ordemNaListagem.put(k, ordem);
+        }
+        somarMargem(novo, ordem);
+    }
+
+    private Produto remover(String k) {
+        var p = produtos.remover(k);
+        if (p == null) return null;
+        saldos.retirar(k);
+        indiceTexto.remover(k);
+        validades.remover(k);
+        subtrairMargem(p, ordemNaListagem.remove(k));
+        return p;
+    }
+
+    private void somarMargem(Produto p, long ordem) {
+        var margem = margem(p);
+        if (margem == null) return;
+        margemPorCategoria = MargemAcumulador.adicionar(margemPorCategoria, grupoCategoria(p), ordem, margem);
+        margemPorSetor = MargemAcumulador.adicionar(margemPorSetor, grupoSetor(p), ordem, margem);
+        margemGeral = margemGeral.com(ordem, margem);
+    }
+
+    private void subtrairMargem(Produto p, long ordem) {
+        var margem = margem(p);
+        if (margem == null) return;
+        margemPorCategoria = MargemAcumulador.remover(margemPorCategoria, grupoCategoria(p), ordem, margem);
+        margemPorSetor = MargemAcumulador.remover(margemPorSetor, grupoSetor(p), ordem, margem);
+        margemGeral = margemGeral.sem(ordem, margem);
+    }
+
+    private static Produto copia(Produto p) {
+        var c = new Produto();
+        c.setCodigo(p.getCodigo());
+        c.setNome(p.getNome());
+        c.setDescricao(p.getDescricao());
+        c.setDataFabricacao(p.getDataFabricacao());
+        c.setDataValidade(p.getDataValidade());
+        c.setPrecoCompra(p.getPrecoCompra());
+        c.setPrecoVenda(p.getPrecoVenda());
+        c.setQuantidadeEstoque(p.getQuantidadeEstoque());
+        c.setCategoria(p.getCategoria());
+        return c;
+    }
+
+    private static boolean codigosDistintos(List<Produto> lista) {
+        var vistos = new HashSet<String>(lista.size() * 2);
+        for (var p : lista) if (!vistos.add(chave(p.getCodigo()))) return false;
+        return true;
+    }
+
+    /**
+     * Margem do produto com 4 casas (HALF_UP), ou null se não houver preços válidos.
+     */
+    private static BigDecimal margem(Produto p) {
+        if (p.getPrecoCompra() == null || p.getPrecoCompra().compareTo(BigDecimal.ZERO) <= 0
+                || p.getPrecoVenda() == null) return null;
+        return p.getPrecoVenda().subtract(p.getPrecoCompra())
+                .divide(p.getPrecoCompra(), 4, RoundingMode.HALF_UP);
+    }
+
+    private static String grupoCategoria(Produto p) {
+        return p.getCategoria() != null && p.getCategoria().getNome() != null
+                ? p.getCategoria().getNome() : "Sem Categoria";
+    }
+
+    private static String grupoSetor(Produto p) {
+        var c = p.getCategoria();
+        return c != null && c.getSetor() != null && !c.getSetor().isBlank() ? c.getSetor().trim() : "Sem Setor";
+    }
 
     // Validações
     private void validar(Produto p, boolean verificarCodigoUnico) {
         if (p.getCodigo()==null || !CODIGO_8.matcher(p.getCodigo()).matches())
             throw new IllegalArgumentException("Código deve ter 8 caracteres alfanuméricos.");
 
-        if (verificarCodigoUnico && consultar(p.getCodigo()).isPresent())
+        if (verificarCodigoUnico && produtos.buscar(chave(p.getCodigo())) != null)
             throw new IllegalArgumentException("Código já existente.");
 
+        var setor = p.getCategoria() != null ? p.getCategoria().getSetor() : null;
+        if (!repo.aceitaSetor(setor))
+            throw new IllegalArgumentException("Setor \"" + (setor == null ? "" : setor.trim()) + "\" não foi carregado nesta instância.");
+
         if (p.getNome()==null || p.getNome().trim().length() < 2)
             throw new IllegalArgumentException("Nome obrigatório (mínimo 2 caracteres).");
 
@@ -108,21 +967,165 @@ public class ProdutoService {
                 && p.getDataValidade().isBefore(p.getDataFabricacao()))
             throw new IllegalArgumentException("Validade não pode ser anterior à fabricação.");
 
-        if (p.getPrecoCompra()==null || p.getPrecoCompra().compareTo(BigDecimal.ZERO) <= 0)
+        validarPrecos(p.getPrecoCompra(), p.getPrecoVenda());
+
+        if (p.getQuantidadeEstoque() < 0)
+            throw new IllegalArgumentException("Quantidade em estoque não pode ser negativa.");
+    }
+
+    private static void validarPrecos(BigDecimal precoCompra, BigDecimal precoVenda) {
+        if (precoCompra==null || precoCompra.compareTo(BigDecimal.ZERO) <= 0)
             throw new IllegalArgumentException("Preço de compra deve ser positivo.");
 
-        if (p.getPrecoVenda()==null || p.getPrecoVenda().compareTo(BigDecimal.ZERO) <= 0)
+        if (precoVenda==null || precoVenda.compareTo(BigDecimal.ZERO) <= 0)
             throw new IllegalArgumentException("Preço de venda deve ser positivo.");
 
-        if (p.getPrecoVenda().compareTo(p.getPrecoCompra()) <= 0)
+        if (precoVenda.compareTo(precoCompra) <= 0)
             throw new IllegalArgumentException("Preço de venda deve ser maior que o de compra.");
+    }
 
-        if (p.getQuantidadeEstoque() < 0)
-            throw new IllegalArgumentException("Quantidade em estoque não pode ser negativa.");
+    /**
+     * Chave do índice primário: a mesma do repositório ({@link ProdutoRepository#chave}).
+     */
+    static String chave(String codigo) {
+        return ProdutoRepository.chave(codigo);
     }
 
+    /**
+     * O catálogo e os acumuladores de margem num mesmo instante; nada aqui muda depois de publicado.
+     */
+    private record Versao(ProdutoSnapshot produtos,
+                          ArvorePersistente<String, MargemAcumulador> margemPorCategoria,
+                          ArvorePersistente<String, MargemAcumulador> margemPorSetor,
+                          MargemAcumulador margemGeral) {}
+
     // DTO leve para exibição (Java 17+)
     public static record NomePorSetor(String setor, String nome) {}
 
+    public static record ResumoMargem(long quantidade, double media, double minima, double maxima) {}
+
+    public static record ErroImportacao(long linha, String codigo, String mensagem) {}
+
+    public static record ResultadoImportacao(long linhasLidas, int importados, List<ErroImportacao> erros) {}
+
+    /**
+     * Uma entrada ou saída de estoque, para {@link #movimentar} (a quantidade é sempre positiva).
+     */
+    public static record Movimento(Tipo tipo, String codigo, int quantidade) {
+        public enum Tipo { ENTRADA, SAIDA }
+
+        public Movimento {
+            Objects.requireNonNull(tipo, "tipo");
+            if (quantidade <= 0) throw new IllegalArgumentException("Quantidade da movimentação deve ser positiva.");
+        }
+
+        public static Movimento entrada(String codigo, int quantidade) { return new Movimento(Tipo.ENTRADA, codigo, quantidade); }
+        public static Movimento saida(String codigo, int quantidade) { return new Movimento(Tipo.SAIDA, codigo, quantidade); }
+
+        int delta() { return tipo == Tipo.ENTRADA ? quantidade : -quantidade; }
+    }
+
+    /**
+     * O que percorrer ou exportar: a listagem ou um dos relatórios, com o seu parâmetro
+     * (dias, limite de estoque, setor ou texto e quantidade da busca).
+     */
+    public static record Consulta(Tipo tipo, String texto, int numero) {
+        public enum Tipo { TODOS, PROXIMOS_A_VENCER, VENCIDOS, ESTOQUE_BAIXO, SETOR, BUSCA }
+
+        public Consulta {
+            Objects.requireNonNull(tipo, "tipo");
+        }
+
+        public static Consulta todos() { return new Consulta(Tipo.TODOS, null, 0); }
+        public static Consulta proximosAVencer(int dias) { return new Consulta(Tipo.PROXIMOS_A_VENCER, null, dias); }
+        public static Consulta vencidos() { return new Consulta(Tipo.VENCIDOS, null, 0); }
+        public static Consulta estoqueBaixo(int limite) { return new Consulta(Tipo.ESTOQUE_BAIXO, null, limite); }
+        public static Consulta setor(String setor) { return new Consulta(Tipo.SETOR, setor, 0); }
+        public static Consulta busca(String texto, int limite) { return new Consulta(Tipo.BUSCA, texto, limite); }
+    }
+
+    /**
+     * Uma consulta presa a uma versão do catálogo (veja {@link #retrato}). Imutável: pode ser lida por várias
+     * threads, sem lock, pelo tempo que a tela precisar.
+     */
+    public static final class Retrato {
+        private final Consulta consulta;
+        private final ProdutoSnapshot produtos;
+        private final LocalDate dia;
+        private final List<String> chaves; // vencidos e busca: separadas na abertura
+        private final List<Produto> lidos; // setor não carregado: lido do disco na abertura
+        private volatile int quantidade = -1;
+
+        private Retrato(Consulta consulta, ProdutoSnapshot produtos, LocalDate dia, List<String> chaves, List<Produto> lidos) {
+            this.consulta = consulta;
+            this.produtos = produtos;
+            this.dia = dia;
+            this.chaves = chaves;
+            this.lidos = lidos;
+        }
+
+        public Consulta consulta() { return consulta; }
+
+        /**
+         * Tamanho do resultado. Fora da listagem conta percorrendo o resultado (sem montar a lista), uma vez só.
+         */
+        public int quantidade() {
+            int n = quantidade;
+            if (n < 0) {
+                n = consulta.tipo() == Consulta.Tipo.TODOS ? produtos.tamanho()
+                        : Math.toIntExact(percorrer(0, Long.MAX_VALUE, Stream::count));
+                quantidade = n;
+            }
+            return n;
+        }
+
+        /**
+         * Até {@code quantidade} produtos a partir da posição {@code inicio} do resultado.
+         */
+        public List<Produto> pagina(int inicio, int quantidade) {
+            return percorrer(inicio, quantidade, Stream::toList);
+        }
+
+        /**
+         * Como {@link ProdutoService#percorrer}, sempre sobre a versão deste retrato.
+         */
+        public <T> T percorrer(long inicio, long limite, Function<Stream<Produto>, T> leitura) {
+            long t0 = System.nanoTime();
+            try {
+                if (inicio < 0 || limite < 0) throw new IllegalArgumentException("Início e limite não podem ser negativos.");
+                return percorrerSemMedir(inicio, limite, leitura);
+            } catch (RuntimeException e) {
+                Metricas.falha(Operacao.LISTAR);
+                throw e;
+            } finally {
+                Metricas.registrar(Operacao.LISTAR, t0);
+            }
+        }
+
+        private <T> T percorrerSemMedir(long inicio, long limite, Function<Stream<Produto>, T> leitura) {
+            Stream<Produto> fluxo;
+            if (consulta.tipo() == Consulta.Tipo.TODOS) {
+                // o armazenamento pula até o início sem montar os produtos pulados
+                fluxo = produtos.fluxo((int) Math.min(inicio, Integer.MAX_VALUE));
+            } else {
+                fluxo = fluxo().skip(inicio);
+            }
+            return leitura.apply(fluxo.limit(limite));
+        }
+
+        private Stream<Produto> fluxo() {
+            String texto = consulta.texto();
+            return switch (consulta.tipo()) {
+                case TODOS -> produtos.fluxo(0);
+                case PROXIMOS_A_VENCER -> consulta.numero() < 0 ? Stream.empty()
+                        : produtos.fluxoValidadeEntre(dia, dia.plusDays(consulta.numero()));
+                case ESTOQUE_BAIXO -> produtos.fluxoEstoqueAbaixoDe(consulta.numero());
+                case SETOR -> lidos != null ? lidos.stream()
+                        : texto == null || texto.isBlank() ? Stream.empty() : produtos.fluxoDoSetor(texto);
+                case VENCIDOS, BUSCA -> chaves == null ? Stream.empty() : chaves.stream().map(produtos::buscar);
+            };
+        }
+    }
+
 
 }
@@ -0,0 +1,75 @@
+package br.com.seuapp.service;
+
+import br.com.seuapp.model.Produto;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Leitura do catálogo em memória. As chaves são códigos normalizados ({@link ProdutoService#chave(String)}).
+ * Empates nos relatórios ficam na ordem de inclusão.
+ * <p>
+ * Um snapshot obtido com {@link ProdutoStore#snapshot()} é uma versão imutável: pode ser lido por várias threads,
+ * sem lock e pelo tempo que for preciso, enquanto o armazenamento continua sendo alterado.
+ */
+public interface ProdutoSnapshot {
+
+    Produto buscar(String chave);
+
+    int tamanho();
+
+    /**
+     * Todos os produtos, na ordem de inclusão.
+     */
+    Collection<Produto> todos();
+
+    /**
+     * Até {@code quantidade} produtos a partir da posição {@code inicio} da ordem de listagem.
+     */
+    List<Produto> pagina(int inicio, int quantidade);
+
+    /**
+     * Produtos a partir da posição {@code inicio} da ordem de listagem, montados à medida que o fluxo é consumido.
+     */
+    default Stream<Produto> fluxo(int inicio) {
+        return todos().stream().skip(inicio);
+    }
+
+    /**
+     * Produtos com validade entre as datas (inclusive), ordenados por validade.
+     */
+    List<Produto> validadeEntre(LocalDate de, LocalDate ate);
+
+    /**
+     * Como {@link #validadeEntre}, sem montar a lista quando o armazenamento consegue percorrer o resultado em ordem.
+     */
+    default Stream<Produto> fluxoValidadeEntre(LocalDate de, LocalDate ate) {
+        return validadeEntre(de, ate).stream();
+    }
+
+    /**
+     * Produtos com estoque menor que o limite, ordenados por quantidade.
+     */
+    List<Produto> estoqueAbaixoDe(int limite);
+
+    /**
+     * Como {@link #estoqueAbaixoDe}, sem montar a lista quando possível.
+     */
+    default Stream<Produto> fluxoEstoqueAbaixoDe(int limite) {
+        return estoqueAbaixoDe(limite).stream();
+    }
+
+    /**
+     * Produtos do setor (sem diferenciar maiúsculas), ordenados por nome.
+     */
+    List<Produto> doSetor(String setor);
+
+    /**
+     * Como {@link #doSetor}, sem montar a lista quando possível.
+     */
+    default Stream<Produto> fluxoDoSetor(String setor) {
+        return doSetor(setor).stream();
+    }
+}
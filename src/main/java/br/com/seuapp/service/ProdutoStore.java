@@ -0,0 +1,59 @@
+package br.com.seuapp.service;
+
+import br.com.seuapp.model.Produto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Armazenamento em memória do catálogo usado pelo {@link ProdutoService}. As leituras feitas direto no
+ * armazenamento enxergam o estado atual e não podem correr junto com alterações; para ler em paralelo
+ * com as alterações, use um {@link #snapshot()}.
+ */
+public interface ProdutoStore extends ProdutoSnapshot {
+
+    /**
+     * Inclui no fim da ordem de listagem; o código do produto ainda não pode estar no armazenamento.
+     */
+    void incluir(Produto p);
+
+    /**
+     * O mesmo que {@link #incluir} para cada produto, na ordem (os códigos não podem se repetir). Usado na carga,
+     * onde o armazenamento pode montar os índices de uma vez.
+     */
+    default void incluirTodos(List<Produto> lista) {
+        for (var p : lista) incluir(p);
+    }
+
+    /**
+     * Troca o produto de mesmo código por {@code p} (inclui, se não existir). O padrão exclui e inclui de novo,
+     * o que leva o produto para o fim da ordem de listagem; o {@link IndexadoProdutoStore} mantém a posição.
+     */
+    default void substituir(Produto p) {
+        remover(ProdutoService.chave(p.getCodigo()));
+        incluir(p);
+    }
+
+    /**
+     * Se {@link #substituir} mantém o produto na sua posição da ordem de listagem (o padrão o leva para o fim).
+     */
+    default boolean mantemPosicaoAoSubstituir() {
+        return false;
+    }
+
+    /**
+     * Remove e devolve o produto (ou null se não existir).
+     */
+    Produto remover(String chave);
+
+    /**
+     * Versão imutável do estado atual, em O(1): alterações posteriores não aparecem nela.
+     * O produto lido de um snapshot não deve ser alterado.
+     */
+    ProdutoSnapshot snapshot();
+
+    /**
+     * Tamanho de cada estrutura interna (nome -> entradas), para monitoramento.
+     */
+    Map<String, Integer> tamanhosDosIndices();
+}
@@ -0,0 +1,76 @@
+package br.com.seuapp.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Saldos de estoque movimentados (entradas e saídas) e ainda não levados ao catálogo: um contador atômico
+ * por produto. Uma movimentação é um compare-and-set no contador do produto, sem lock: caixas vendendo
+ * produtos diferentes não se encontram, e os que vendem o mesmo produto só refazem a conta quando outro
+ * passou na frente. Uma saída maior que o saldo é recusada, então o saldo nunca fica negativo.
+ * <p>
+ * Enquanto existe, o contador é a quantidade em estoque que vale; {@link #consolidar} entrega os saldos
+ * para o catálogo e descarta os contadores, e o próximo movimento parte de novo da quantidade do catálogo.
+ * Consolidação e {@link #retirar} rodam com o lock de escrita do serviço e as movimentações com o de leitura:
+ * um contador nunca é criado a partir de uma versão do catálogo que já não vale.
+ */
+final class SaldosDeEstoque {
+    static final int INSUFICIENTE = -1;
+
+    private final ConcurrentHashMap<String, AtomicInteger> saldos = new ConcurrentHashMap<>();
+
+    /**
+     * Soma {@code delta} ao saldo do produto e devolve o saldo novo, ou {@link #INSUFICIENTE} se o saldo ficaria
+     * negativo (nada muda). {@code inicial} dá a quantidade do catálogo; só é lido no primeiro movimento.
+     */
+    int somar(String chave, int delta, IntSupplier inicial) {
+        var saldo = saldos.get(chave);
+        if (saldo == null) saldo = saldos.computeIfAbsent(chave, k -> new AtomicInteger(inicial.getAsInt()));
+        int atual, novo;
+        do {
+            atual = saldo.get();
+            if (delta < 0 && atual < -delta) return INSUFICIENTE;
+            if (delta > 0 && atual > Integer.MAX_VALUE - delta) throw new IllegalArgumentException("Estoque passaria do limite.");
+            novo = atual + delta;
+        } while (!saldo.compareAndSet(atual, novo));
+        return novo;
+    }
+
+    /**
+     * Saldo ainda não consolidado do produto, ou null se ele não foi movimentado desde a última consolidação.
+     */
+    Integer atual(String chave) {
+        var saldo = saldos.get(chave);
+        return saldo == null ? null : saldo.get();
+    }
+
+    /**
+     * Descarta o contador do produto (a quantidade foi definida de outro jeito) e devolve o saldo que ele tinha,
+     * ou null. Com o lock de escrita.
+     */
+    Integer retirar(String chave) {
+        var saldo = saldos.remove(chave);
+        return saldo == null ? null : saldo.get();
+    }
+
+    boolean vazio() {
+        return saldos.isEmpty();
+    }
+
+    int quantidade() {
+        return saldos.size();
+    }
+
+    /**
+     * Entrega cada produto movimentado com o seu saldo e descarta os contadores. Com o lock de escrita.
+     */
+    void consolidar(ObjIntConsumer<String> acao) {
+        for (var it = saldos.entrySet().iterator(); it.hasNext(); ) {
+            var e = it.next();
+            it.remove();
+            acao.accept(e.getKey(), e.getValue().get());
+        }
+    }
+}
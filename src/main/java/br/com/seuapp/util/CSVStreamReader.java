@@ -0,0 +1,231 @@
+package br.com.seuapp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Leitor de CSV (separador ';', UTF-8) que percorre o arquivo linha a linha direto dos bytes,
+ * sem carregar o arquivo inteiro nem criar String/String[] por linha.
+ * <p>
+ * Uso: {@link #proximaLinha()} avança; os métodos de campo leem a linha atual já com trim.
+ * Só os campos de texto viram String; datas dd/MM/yyyy, decimais e inteiros são convertidos
+ * a partir dos bytes (formatos fora do caminho rápido caem no parser padrão, com o mesmo resultado).
+ * Arquivos em gzip são descomprimidos em fluxo (veja {@link CSVUtils#abrirLeitura}).
+ */
+public class CSVStreamReader implements Closeable {
+    private static final byte SEP = ';';
+    private static final DateTimeFormatter BR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final ReadableByteChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long restante; // bytes que ainda podem ser lidos do canal (limite do trecho)
+    private boolean fimDoCanal = false;
+    private boolean pularLF = false; // acabou de ler '\r': um '\n' seguinte pertence à mesma quebra
+
+    private byte[] linha = new byte[512];
+    private int tamanho;
+    private int[] ini = new int[16];
+    private int[] fim = new int[16];
+    private int campos;
+
+    private CSVStreamReader(ReadableByteChannel canal, long inicio, long limite) throws IOException {
+        this.canal = canal;
+        if (canal instanceof FileChannel arquivo) arquivo.position(inicio);
+        this.restante = limite - inicio;
+        buffer.flip(); // começa vazio
+    }
+
+    /**
+     * Abre o arquivo inteiro (em gzip ou não). Se não existir, devolve um leitor sem linhas.
+     */
+    public static CSVStreamReader abrir(Path path) throws IOException {
+        if (!Files.exists(path)) return vazio();
+        if (CSVUtils.gzip(path)) return new CSVStreamReader(Channels.newChannel(CSVUtils.abrirLeitura(path)), 0, Long.MAX_VALUE);
+        var canal = FileChannel.open(path, StandardOpenOption.READ);
+        return new CSVStreamReader(canal, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Abre somente o trecho [inicio, fim) do arquivo; o trecho deve começar e terminar em início de linha.
+     * Só para arquivos sem compressão (as posições são em bytes do arquivo).
+     */
+    public static CSVStreamReader abrir(Path path, long inicio, long fim) throws IOException {
+        var canal = FileChannel.open(path, StandardOpenOption.READ);
+        return new CSVStreamReader(canal, inicio, fim);
+    }
+
+    private static CSVStreamReader vazio() throws IOException {
+        return new CSVStreamReader(null, 0, 0);
+    }
+
+    /**
+     * Lê a próxima linha. Retorna false no fim do arquivo (ou do trecho).
+     */
+    public boolean proximaLinha() throws IOException {
+        tamanho = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !encher()) {
+                if (tamanho == 0) return false; // última linha sem quebra no final é devolvida normalmente
+                break;
+            }
+            byte b = buffer.get();
+            if (pularLF) {
+                pularLF = false;
+                if (b == '\n') continue;
+            }
+            if (b == '\n') break;
+            if (b == '\r') { pularLF = true; break; }
+            if (tamanho == linha.length) linha = Arrays.copyOf(linha, tamanho * 2);
+            linha[tamanho++] = b;
+        }
+        separarCampos();
+        return true;
+    }
+
+    private boolean encher() throws IOException {
+        if (canal == null || fimDoCanal || restante <= 0) return false;
+        buffer.clear();
+        if (restante < buffer.capacity()) buffer.limit((int) restante);
+        int n = canal.read(buffer);
+        buffer.flip();
+        if (n <= 0) { fimDoCanal = true; return false; }
+        restante -= n;
+        return true;
+    }
+
+    private void separarCampos() {
+        campos = 0;
+        int inicio = 0;
+        for (int i = 0; i <= tamanho; i++) {
+            if (i == tamanho || linha[i] == SEP) {
+                if (campos == ini.length) {
+                    ini = Arrays.copyOf(ini, campos * 2);
+                    fim = Arrays.copyOf(fim, campos * 2);
+                }
+                // trim: mesmos caracteres que String.trim() (bytes <= ' '; UTF-8 multibyte é sempre >= 0x80)
+                int a = inicio, z = i;
+                while (a < z && (linha[a] & 0xFF) <= ' ') a++;
+                while (z > a && (linha[z - 1] & 0xFF) <= ' ') z--;
+                ini[campos] = a;
+                fim[campos] = z;
+                campos++;
+                inicio = i + 1;
+            }
+        }
+    }
+
+    public boolean linhaEmBranco() {
+        for (int i = 0; i < tamanho; i++) if ((linha[i] & 0xFF) > ' ') return false;
+        return true;
+    }
+
+    public int campos() { return campos; }
+
+    /**
+     * Campo ausente ou só com espaços.
+     */
+    public boolean vazio(int idx) {
+        return idx < 0 || idx >= campos || ini[idx] == fim[idx];
+    }
+
+    public boolean igual(int idx, String ascii) {
+        if (idx < 0 || idx >= campos || fim[idx] - ini[idx] != ascii.length()) return false;
+        for (int i = 0; i < ascii.length(); i++) if (linha[ini[idx] + i] != ascii.charAt(i)) return false;
+        return true;
+    }
+
+    /**
+     * Texto do campo com trim; "" se ausente.
+     */
+    public String texto(int idx) {
+        if (vazio(idx)) return "";
+        return new String(linha, ini[idx], fim[idx] - ini[idx], StandardCharsets.UTF_8);
+    }
+
+    public int inteiro(int idx, int padrao) {
+        if (vazio(idx)) return padrao;
+        int a = ini[idx], z = fim[idx];
+        boolean negativo = false;
+        if (linha[a] == '-' || linha[a] == '+') { negativo = linha[a] == '-'; a++; }
+        if (a == z || z - a > 9) return Integer.parseInt(texto(idx));
+        int v = 0;
+        for (int i = a; i < z; i++) {
+            int d = linha[i] - '0';
+            if (d < 0 || d > 9) return Integer.parseInt(texto(idx)); // lança o mesmo erro de antes
+            v = v * 10 + d;
+        }
+        return negativo ? -v : v;
+    }
+
+    /**
+     * Data no formato dd/MM/yyyy; null se vazio.
+     */
+    public LocalDate data(int idx) {
+        if (vazio(idx)) return null;
+        int a = ini[idx];
+        if (fim[idx] - a == 10 && linha[a + 2] == '/' && linha[a + 5] == '/') {
+            int d = digitos(a, 2), m = digitos(a + 3, 2), y = digitos(a + 6, 4);
+            if (d >= 1 && m >= 1 && m <= 12 && y >= 0 && d <= diasNoMes(m, y)) return LocalDate.of(y, m, d);
+        }
+        // demais casos (ex.: 31/02, que o formatter ajusta para o último dia) ficam com o parser padrão
+        return LocalDate.parse(texto(idx), BR);
+    }
+
+    /**
+     * Decimal simples ([+-]digitos[.digitos]) montado como unscaled/scale; null se vazio.
+     */
+    public BigDecimal decimal(int idx) {
+        if (vazio(idx)) return null;
+        int a = ini[idx], z = fim[idx];
+        boolean negativo = false;
+        if (linha[a] == '-' || linha[a] == '+') { negativo = linha[a] == '-'; a++; }
+        long unscaled = 0;
+        int digitos = 0, escala = 0;
+        boolean ponto = false;
+        for (int i = a; i < z; i++) {
+            byte b = linha[i];
+            if (b == '.' && !ponto) { ponto = true; continue; }
+            int d = b - '0';
+            if (d < 0 || d > 9 || ++digitos > 18) return new BigDecimal(texto(idx));
+            unscaled = unscaled * 10 + d;
+            if (ponto) escala++;
+        }
+        if (digitos == 0) return new BigDecimal(texto(idx)); // lança NumberFormatException como antes
+        return BigDecimal.valueOf(negativo ? -unscaled : unscaled, escala);
+    }
+
+    private int digitos(int pos, int n) {
+        int v = 0;
+        for (int i = pos; i < pos + n; i++) {
+            int d = linha[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int diasNoMes(int m, int y) {
+        return switch (m) {
+            case 2 -> (y % 4 == 0 && (y % 100 != 0 || y % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal != null) canal.close();
+    }
+}
@@ -4,8 +4,79 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Arquivos CSV em UTF-8. Arquivos terminados em ".gz" são gravados com gzip; na leitura o gzip
+ * é reconhecido pelo conteúdo (assinatura 1f 8b), qualquer que seja o nome. Compressão e descompressão
+ * são feitas em fluxo: o conteúdo descomprimido nunca fica inteiro em memória.
+ */
 public class CSVUtils {
+    private static final int BUFFER = 64 * 1024;
+
+    /**
+     * Se o arquivo deve ser gravado comprimido (nome terminado em ".gz").
+     */
+    public static boolean comprimirAoGravar(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    /**
+     * O mesmo caminho sem o ".gz" final ("produtos.csv.gz" -> "produtos.csv").
+     */
+    public static Path semCompressao(Path path) {
+        if (!comprimirAoGravar(path)) return path;
+        var nome = path.getFileName().toString();
+        return path.resolveSibling(nome.substring(0, nome.length() - 3));
+    }
+
+    /**
+     * Se o arquivo existe e está em gzip (pela assinatura, não pelo nome).
+     */
+    public static boolean gzip(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) return false;
+        try (var in = Files.newInputStream(path)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    /**
+     * Abre o arquivo para leitura, descomprimindo se estiver em gzip.
+     */
+    public static InputStream abrirLeitura(Path path) throws IOException {
+        var in = Files.newInputStream(path);
+        return gzip(path) ? new GZIPInputStream(in, BUFFER) : new BufferedInputStream(in, BUFFER);
+    }
+
+    /**
+     * Abre o arquivo para gravação (cria as pastas; substitui o conteúdo), com gzip se o nome terminar em ".gz".
+     */
+    public static BufferedWriter abrirEscrita(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        OutputStream out = Files.newOutputStream(path);
+        if (comprimirAoGravar(path)) out = new GZIPOutputStream(out, BUFFER);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+    }
+
+    /**
+     * Arquivo temporário ao lado de {@code path}, com a mesma compressão ("produtos.csv" -> "produtos.csv.tmp",
+     * "produtos.csv.gz" -> "produtos.csv.tmp.gz"): grava-se nele e depois {@link #substituir} o põe no lugar.
+     */
+    public static Path temporario(Path path) {
+        var nome = semCompressao(path).getFileName().toString() + ".tmp";
+        return path.resolveSibling(comprimirAoGravar(path) ? nome + ".gz" : nome);
+    }
+
+    /**
+     * Põe {@code temporario} no lugar de {@code destino} num passo só: quem lê (ou uma queda no meio)
+     * encontra o arquivo antigo ou o novo, nunca um pedaço.
+     */
+    public static void substituir(Path temporario, Path destino) throws IOException {
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     public static void ensureParentExists(Path path) throws IOException {
         Files.createDirectories(path.getParent());
         if (!Files.exists(path)) Files.createFile(path);
@@ -13,11 +84,42 @@ public class CSVUtils {
 
     public static List<String> readAllLines(Path path) throws IOException {
         if (!Files.exists(path)) return List.of();
-        return Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (!gzip(path)) return Files.readAllLines(path, StandardCharsets.UTF_8);
+        try (var leitor = new BufferedReader(new InputStreamReader(abrirLeitura(path), StandardCharsets.UTF_8))) {
+            return leitor.lines().toList();
+        }
+    }
+
+    public static void writeAllLines(Path path, Iterable<String> lines) throws IOException {
+        try (var out = abrirEscrita(path)) {
+            for (var linha : lines) {
+                out.write(linha);
+                out.newLine();
+            }
+        }
     }
 
-    public static void writeAllLines(Path path, List<String> lines) throws IOException {
+    /**
+     * Acrescenta uma linha ao final do arquivo (cria se não existir), sem reescrever o conteúdo anterior.
+     */
+    public static void appendLine(Path path, String line) throws IOException {
         ensureParentExists(path);
-        Files.write(path, lines, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+        Files.writeString(path, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Acrescenta várias linhas de uma vez ao final do arquivo (cria se não existir).
+     */
+    public static void appendLines(Path path, Iterable<String> lines) throws IOException {
+        ensureParentExists(path);
+        Files.write(path, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Esvazia o arquivo, se existir.
+     */
+    public static void truncate(Path path) throws IOException {
+        if (Files.exists(path)) Files.write(path, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
     }
 }
@@ -0,0 +1,49 @@
+package br.com.seuapp.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábricas de executores da aplicação.
+ * O projeto compila para Java 17; quando roda num JDK com virtual threads (21+), elas são usadas.
+ */
+public final class Executores {
+    private Executores() {}
+
+    /**
+     * Uma thread por tarefa: virtual threads quando disponíveis; senão, pool elástico de threads daemon.
+     */
+    public static ExecutorService porTarefa(String nome) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemon(nome));
+        }
+    }
+
+    /**
+     * Uma única thread daemon: as tarefas rodam uma de cada vez, na ordem em que foram enviadas.
+     */
+    public static ExecutorService sequencial(String nome) {
+        return Executors.newSingleThreadExecutor(daemon(nome));
+    }
+
+    /**
+     * Uma thread daemon para tarefas com hora marcada.
+     */
+    public static ScheduledExecutorService agendador(String nome) {
+        return Executors.newSingleThreadScheduledExecutor(daemon(nome));
+    }
+
+    private static ThreadFactory daemon(String nome) {
+        var contador = new AtomicInteger();
+        return r -> {
+            var t = new Thread(r, nome + "-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
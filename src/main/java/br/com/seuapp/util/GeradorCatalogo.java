@@ -0,0 +1,117 @@
+package br.com.seuapp.util;
+
+import br.com.seuapp.model.Categoria;
+import br.com.seuapp.model.Produto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Gera catálogos sintéticos (determinísticos pela semente) para benchmarks e testes de carga.
+ * Os produtos gerados passam nas validações do cadastro: código de 8 caracteres alfanuméricos,
+ * fabricação não futura, validade depois da fabricação e preço de venda maior que o de compra.
+ * As categorias seguem uma distribuição desigual (poucas categorias concentram a maioria dos produtos).
+ */
+public class GeradorCatalogo {
+    private static final String[] SETORES = {
+            "Secos", "Refrigerados", "Perfumaria", "Limpeza", "Bebidas", "Hortifruti", "Congelados", "Padaria"
+    };
+    private static final String[] NOMES = {
+            "Arroz Tipo 1", "Feijão Carioca", "Farinha de Trigo", "Macarrão Espaguete", "Iogurte Natural",
+            "Leite Integral", "Queijo Mussarela", "Sabonete Neutro", "Detergente Líquido", "Refrigerante Cola",
+            "Suco de Laranja", "Café Torrado", "Açúcar Refinado", "Biscoito Recheado", "Pão de Forma"
+    };
+
+    private final Random random;
+    private final LocalDate hoje;
+    private int quantidadeCategorias = 50;
+    private int diasValidade = 730;
+    private Categoria[] categorias;
+
+    public GeradorCatalogo(long semente) {
+        this(semente, LocalDate.now());
+    }
+
+    public GeradorCatalogo(long semente, LocalDate hoje) {
+        this.random = new Random(semente);
+        this.hoje = hoje;
+    }
+
+    public int getQuantidadeCategorias() { return quantidadeCategorias; }
+    public void setQuantidadeCategorias(int quantidadeCategorias) {
+        if (quantidadeCategorias < 1) throw new IllegalArgumentException("Informe ao menos uma categoria.");
+        this.quantidadeCategorias = quantidadeCategorias;
+        this.categorias = null;
+    }
+
+    /**
+     * Espalhamento das datas de validade: de 30 dias atrás até este número de dias à frente.
+     */
+    public int getDiasValidade() { return diasValidade; }
+    public void setDiasValidade(int diasValidade) {
+        if (diasValidade < 1) throw new IllegalArgumentException("Espalhamento de validade deve ser positivo.");
+        this.diasValidade = diasValidade;
+    }
+
+    /**
+     * Setores usados nas categorias geradas.
+     */
+    public static List<String> setores() {
+        return List.of(SETORES);
+    }
+
+    public List<Produto> gerar(int quantidade) {
+        var lista = new ArrayList<Produto>(quantidade);
+        for (int i = 0; i < quantidade; i++) lista.add(produto(i));
+        return lista;
+    }
+
+    /**
+     * Código de 8 caracteres (base 36, maiúsculo) derivado do número sequencial.
+     */
+    public static String codigo(long i) {
+        var s = Long.toString(i, 36).toUpperCase(Locale.ROOT);
+        if (s.length() > 8) throw new IllegalArgumentException("Sequencial grande demais para 8 caracteres: " + i);
+        return "0".repeat(8 - s.length()) + s;
+    }
+
+    public Produto produto(long i) {
+        var p = new Produto();
+        p.setCodigo(codigo(i));
+        String base = NOMES[random.nextInt(NOMES.length)];
+        p.setNome(base + " " + (1 + random.nextInt(999)) + "g");
+        p.setDescricao(base + ", lote " + (i % 1000));
+
+        var fabricacao = hoje.minusDays(random.nextInt(180));
+        var validade = hoje.plusDays(random.nextInt(diasValidade + 30) - 30);
+        p.setDataFabricacao(fabricacao);
+        p.setDataValidade(validade.isBefore(fabricacao) ? fabricacao : validade);
+
+        var compra = BigDecimal.valueOf(50 + random.nextInt(20_000), 2);
+        var fator = BigDecimal.valueOf(105 + random.nextInt(96), 2); // 1,05 a 2,00
+        p.setPrecoCompra(compra);
+        p.setPrecoVenda(compra.multiply(fator).setScale(2, RoundingMode.HALF_UP));
+
+        double r = random.nextDouble();
+        p.setQuantidadeEstoque((int) (r * r * 200)); // maioria com pouco estoque
+        p.setCategoria(categoria());
+        return p;
+    }
+
+    private Categoria categoria() {
+        if (categorias == null) {
+            categorias = new Categoria[quantidadeCategorias];
+            for (int c = 0; c < quantidadeCategorias; c++) {
+                categorias[c] = new Categoria(100 + c, "Categoria " + c, "Descrição da categoria " + c,
+                        SETORES[c % SETORES.length]);
+            }
+        }
+        double r = random.nextDouble();
+        return categorias[(int) (r * r * quantidadeCategorias)];
+    }
+}
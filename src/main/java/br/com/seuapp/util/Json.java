@@ -0,0 +1,195 @@
+package br.com.seuapp.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON mínimo para a API HTTP (o projeto não tem dependência de biblioteca JSON).
+ * Escrita: Map, Iterable, String, Number, Boolean e null. Leitura: objetos viram LinkedHashMap,
+ * arrays viram ArrayList e números viram BigDecimal (sem perder casas decimais de preços).
+ */
+public final class Json {
+    private Json() {}
+
+    public static String escrever(Object valor) {
+        var sb = new StringBuilder(256);
+        escrever(valor, sb);
+        return sb.toString();
+    }
+
+    public static void escrever(Object valor, StringBuilder sb) {
+        if (valor == null) {
+            sb.append("null");
+        } else if (valor instanceof String s) {
+            texto(s, sb);
+        } else if (valor instanceof BigDecimal d) {
+            sb.append(d.toPlainString());
+        } else if (valor instanceof Number || valor instanceof Boolean) {
+            sb.append(valor);
+        } else if (valor instanceof Map<?, ?> m) {
+            sb.append('{');
+            boolean primeiro = true;
+            for (var e : m.entrySet()) {
+                if (!primeiro) sb.append(',');
+                primeiro = false;
+                texto(String.valueOf(e.getKey()), sb);
+                sb.append(':');
+                escrever(e.getValue(), sb);
+            }
+            sb.append('}');
+        } else if (valor instanceof Iterable<?> it) {
+            sb.append('[');
+            boolean primeiro = true;
+            for (var v : it) {
+                if (!primeiro) sb.append(',');
+                primeiro = false;
+                escrever(v, sb);
+            }
+            sb.append(']');
+        } else {
+            texto(valor.toString(), sb);
+        }
+    }
+
+    private static void texto(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Lê um documento JSON; lança IllegalArgumentException se for inválido.
+     */
+    public static Object ler(String json) {
+        var leitor = new Leitor(json);
+        Object v = leitor.valor();
+        leitor.espacos();
+        if (leitor.pos != json.length()) throw leitor.erro("conteúdo depois do fim do documento");
+        return v;
+    }
+
+    private static final class Leitor {
+        private final String s;
+        private int pos;
+
+        Leitor(String s) { this.s = s; }
+
+        Object valor() {
+            espacos();
+            if (pos >= s.length()) throw erro("fim inesperado");
+            char c = s.charAt(pos);
+            return switch (c) {
+                case '{' -> objeto();
+                case '[' -> lista();
+                case '"' -> texto();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> numero();
+            };
+        }
+
+        private Map<String, Object> objeto() {
+            var m = new LinkedHashMap<String, Object>();
+            pos++;
+            espacos();
+            if (proximo('}')) return m;
+            do {
+                espacos();
+                if (pos >= s.length() || s.charAt(pos) != '"') throw erro("esperado nome do campo");
+                String chave = texto();
+                espacos();
+                if (!proximo(':')) throw erro("esperado ':'");
+                m.put(chave, valor());
+                espacos();
+            } while (proximo(','));
+            if (!proximo('}')) throw erro("esperado '}'");
+            return m;
+        }
+
+        private List<Object> lista() {
+            var l = new ArrayList<Object>();
+            pos++;
+            espacos();
+            if (proximo(']')) return l;
+            do {
+                l.add(valor());
+                espacos();
+            } while (proximo(','));
+            if (!proximo(']')) throw erro("esperado ']'");
+            return l;
+        }
+
+        private String texto() {
+            pos++; // aspas
+            var sb = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos >= s.length()) break;
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw erro("escape \\u incompleto");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(e); // \" \\ \/
+                }
+            }
+            throw erro("texto sem aspas de fechamento");
+        }
+
+        private BigDecimal numero() {
+            int ini = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            if (ini == pos) throw erro("valor inválido");
+            try {
+                return new BigDecimal(s.substring(ini, pos));
+            } catch (NumberFormatException e) {
+                throw erro("número inválido");
+            }
+        }
+
+        private Object literal(String palavra, Object valor) {
+            if (!s.startsWith(palavra, pos)) throw erro("valor inválido");
+            pos += palavra.length();
+            return valor;
+        }
+
+        private boolean proximo(char c) {
+            if (pos < s.length() && s.charAt(pos) == c) { pos++; return true; }
+            return false;
+        }
+
+        void espacos() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        IllegalArgumentException erro(String msg) {
+            return new IllegalArgumentException("JSON inválido (posição " + pos + "): " + msg);
+        }
+    }
+}